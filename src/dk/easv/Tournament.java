@@ -0,0 +1,237 @@
+package dk.easv;
+
+import dk.easv.bll.bot.IBot;
+import dk.easv.bll.bot.IBudgetedBot;
+import dk.easv.bll.bot.IRemoteBot;
+import dk.easv.bll.game.GameOutcome;
+import dk.easv.bll.game.GameRunner;
+import dk.easv.bll.game.GameSeeds;
+import dk.easv.bll.game.LatencyHistogram;
+import dk.easv.bll.game.MoveWatchdog;
+import dk.easv.bll.game.SimulationScheduler;
+import dk.easv.bll.game.SimulationThroughput;
+import dk.easv.bll.game.TimeControl;
+import dk.easv.bll.game.stats.ResultAggregator;
+import dk.easv.bll.game.stats.ResultSnapshot;
+import dk.easv.bll.search.SearchBudget;
+import dk.easv.bll.search.SearchMonitor;
+import dk.easv.dal.GameRecordWriter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Plays a match between two bots without the GUI, e.g. nightly on a headless server:
+ *
+ *   java -cp ... dk.easv.Tournament botA botB [options]
+ *
+ *   --games N     games to play, the bots take turns moving first (default 100)
+ *   --threads N   games played at the same time (default: one per core)
+ *   --time T      "100" for 100 ms per move, or "60000+500" for a clock (default 1000)
+ *   --nodes N     search N nodes per move instead of using the clock, for bots that can
+ *   --seed S      master seed, to play the same games again (default -Duttt.seed or random)
+ *   --record F    write the moves and think times of every game to the file F, see GameRecord
+ *   --in-flight N play every game on a virtual thread of its own, up to N at a time, with
+ *                 the local bots' moves on --threads carrier threads; for remote bots
+ *   --grace MS    how long after the hard deadline of a move it is still accepted
+ *                 (default -Duttt.grace.ms or 100)
+ *   --timeouts T  "forfeit" for a bot that is later than that to lose the game, "wait" to
+ *                 only count and log it (default forfeit, -Duttt.forfeit.timeouts), or "off"
+ *                 to not watch the moves at all, which saves a thread switch per move
+ *
+ * Bots are given by class name, fully qualified or in dk.easv.bll.bot. The games
+ * are scheduled like the simulation in the GUI, see SimulationScheduler. Against
+ * TeacherBotREST the games are played on virtual threads even without --in-flight.
+ */
+public class Tournament {
+
+    private static final String BOT_PACKAGE = "dk.easv.bll.bot.";
+
+    private final Class<? extends IBot> botA;
+    private final Class<? extends IBot> botB;
+    private long games = 100;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private TimeControl timeControl = TimeControl.perMove(1000);
+    private SearchBudget budget = SearchBudget.time();
+    private long masterSeed = GameSeeds.masterSeed();
+    private int inFlight;
+    private Path recordFile;
+    private long graceMillis = Long.getLong("uttt.grace.ms", MoveWatchdog.DEFAULT_GRACE_MILLIS);
+    private boolean forfeitTimeouts = Boolean.parseBoolean(System.getProperty("uttt.forfeit.timeouts", "true"));
+    private boolean watchMoves = true;
+
+    private Tournament(Class<? extends IBot> botA, Class<? extends IBot> botB) {
+        this.botA = botA;
+        this.botB = botB;
+    }
+
+    public static void main(String[] args) {
+        Tournament tournament;
+        try {
+            tournament = parse(args);
+        }
+        catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println("Usage: Tournament <bot A> <bot B> [--games N] [--threads N] [--time ms|base+inc] [--nodes N] [--seed S] [--record file] [--in-flight N] [--grace ms] [--timeouts forfeit|wait|off]");
+            System.exit(1);
+            return;
+        }
+        tournament.run();
+    }
+
+    private static Tournament parse(String[] args) {
+        if (args.length < 2)
+            throw new IllegalArgumentException("Two bots are needed");
+        Tournament tournament = new Tournament(botClass(args[0]), botClass(args[1]));
+        for (int i = 2; i < args.length; i += 2) {
+            if (i + 1 >= args.length)
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            String value = args[i + 1];
+            try {
+                switch (args[i]) {
+                    case "--games": tournament.games = Long.parseLong(value); break;
+                    case "--threads": tournament.threads = Integer.parseInt(value); break;
+                    case "--time": tournament.timeControl = TimeControl.parse(value); break;
+                    case "--nodes": tournament.budget = SearchBudget.nodes(Long.parseLong(value)); break;
+                    case "--seed": tournament.masterSeed = Long.parseLong(value); break;
+                    case "--in-flight": tournament.inFlight = Integer.parseInt(value); break;
+                    case "--record": tournament.recordFile = Paths.get(value); break;
+                    case "--grace": tournament.graceMillis = Long.parseLong(value); break;
+                    case "--timeouts":
+                        tournament.watchMoves = !value.equals("off");
+                        tournament.forfeitTimeouts = !tournament.watchMoves || forfeit(value);
+                        break;
+                    default: throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+            catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Invalid value for " + args[i] + ": " + value);
+            }
+        }
+        if (tournament.games < 1 || tournament.threads < 1 || tournament.inFlight < 0)
+            throw new IllegalArgumentException("Games and threads must be positive");
+        if (tournament.graceMillis < 0)
+            throw new IllegalArgumentException("The grace margin cannot be negative");
+        return tournament;
+    }
+
+    private static boolean forfeit(String timeouts) {
+        switch (timeouts) {
+            case "forfeit": return true;
+            case "wait": return false;
+            default: throw new IllegalArgumentException("--timeouts is forfeit, wait or off, not " + timeouts);
+        }
+    }
+
+    private static Class<? extends IBot> botClass(String name) {
+        String className = name.contains(".") ? name : BOT_PACKAGE + name;
+        try {
+            return Class.forName(className).asSubclass(IBot.class);
+        }
+        catch (ClassNotFoundException | ClassCastException ex) {
+            throw new IllegalArgumentException("Not a bot: " + className);
+        }
+    }
+
+    private IBot newBot(Class<? extends IBot> botClass) {
+        try {
+            IBot bot = botClass.getConstructor().newInstance();
+            if (!budget.isTimed() && bot instanceof IBudgetedBot)
+                ((IBudgetedBot) bot).setSearchBudget(budget);
+            return bot;
+        }
+        catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("Cannot create " + botClass.getName(), ex);
+        }
+    }
+
+    private void run() {
+        String nameA = newBot(botA).getBotName();
+        String nameB = newBot(botB).getBotName();
+        GameRecordWriter records = null;
+        if (recordFile != null) {
+            try {
+                records = GameRecordWriter.create(recordFile);
+            }
+            catch (IOException ex) {
+                System.err.println("Cannot write " + recordFile + ": " + ex.getMessage());
+                System.exit(1);
+            }
+        }
+        Tally tally = new Tally(nameA, nameB, masterSeed, records);
+        boolean remote = IRemoteBot.class.isAssignableFrom(botA) || IRemoteBot.class.isAssignableFrom(botB);
+        SimulationScheduler scheduler;
+        if (inFlight > 0 || remote) {
+            scheduler = new SimulationScheduler(threads, SimulationScheduler.Mode.VIRTUAL);
+            if (inFlight > 0)
+                scheduler.setMaxGamesInFlight(inFlight);
+        }
+        else {
+            scheduler = new SimulationScheduler(threads);
+        }
+        MoveWatchdog watchdog = watchMoves ? new MoveWatchdog(graceMillis, forfeitTimeouts) : null;
+        SimulationThroughput throughput = scheduler.run(
+                () -> newBot(botA), () -> newBot(botB), new GameRunner(timeControl, watchdog), games, masterSeed, tally);
+        // Every game has been played, so this is the exact result
+        ResultSnapshot result = tally.results.snapshot();
+
+        System.out.printf("%s vs %s: %s, %s, %s, seed %d%n",
+                nameA, nameB, throughput, timeControl, budget, masterSeed);
+        System.out.printf("  %s wins %,d (%,d moving first)%n", nameA, result.getWinsA(), result.getWinsAFirst());
+        System.out.printf("  %s wins %,d (%,d moving first)%n", nameB, result.getWinsB(), result.getWinsBFirst());
+        System.out.printf("  ties %,d, forfeits %,d by %s and %,d by %s%n",
+                result.getTies(), result.getForfeitsA(), nameA, result.getForfeitsB(), nameB);
+        System.out.printf("  %s: %s%n", nameA, tally.latencyA);
+        System.out.printf("  %s: %s%n", nameB, tally.latencyB);
+        if (watchdog != null) {
+            watchdog.close();
+            System.out.printf("  %s%n", watchdog);
+        }
+        for (String summary : SearchMonitor.get().getBotSummaries())
+            System.out.println("  " + summary);
+        if (records != null) {
+            try {
+                records.close();
+                System.out.printf("  %,d games recorded in %s%n", records.getGames(), recordFile);
+            }
+            catch (IOException ex) {
+                System.err.println("Cannot write " + recordFile + ": " + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Adds up the results of the games as they finish, on whichever thread played them.
+     */
+    private static class Tally implements SimulationScheduler.GameListener {
+        private final ResultAggregator.Pair results;
+        private final LatencyHistogram latencyA = new LatencyHistogram();
+        private final LatencyHistogram latencyB = new LatencyHistogram();
+        private final String nameA;
+        private final String nameB;
+        private final long masterSeed;
+        private final GameRecordWriter records;
+
+        Tally(String nameA, String nameB, long masterSeed, GameRecordWriter records) {
+            results = new ResultAggregator().pair(nameA, nameB);
+            this.nameA = nameA;
+            this.nameB = nameB;
+            this.masterSeed = masterSeed;
+            this.records = records;
+        }
+
+        @Override
+        public void gameFinished(long game, boolean aFirst, GameOutcome outcome) {
+            results.record(aFirst, outcome);
+            if (records != null)
+                records.write(aFirst ? nameA : nameB, aFirst ? nameB : nameA, masterSeed, game, outcome);
+            synchronized (this) {
+                for (int ply = 0; ply < outcome.getPlies(); ply++) {
+                    boolean aMoved = (ply % 2 == 0) == aFirst;
+                    (aMoved ? latencyA : latencyB).record(outcome.getMoveNanos(ply));
+                }
+            }
+        }
+    }
+}
@@ -1,68 +1,149 @@
 package dk.easv.bll.bot;
 
-import dk.easv.bll.field.IField;
-import dk.easv.bll.game.GameManager;
-import dk.easv.bll.game.GameState;
+import dk.easv.bll.field.Symmetry;
 import dk.easv.bll.game.IGameState;
 import dk.easv.bll.move.IMove;
-
-import java.util.List;
-import java.util.Random;
-
-public class AlphaBetaBot implements IBot {
+import dk.easv.bll.search.IEvaluator;
+import dk.easv.bll.search.ProofNumberSearch;
+import dk.easv.bll.search.SearchBoard;
+import dk.easv.bll.search.SearchReport;
+import dk.easv.bll.search.SearchStats;
+import dk.easv.bll.search.TranspositionTable;
+
+/**
+ * Fixed depth alpha-beta search with a proof-number solver for positions close to
+ * a macro win.
+ *
+ * Both share one TranspositionTable, under salts of their own. Alpha-beta stores
+ * a score per position and remaining depth, with whether it is exact or a bound,
+ * and only uses an entry searched to the same remaining depth, so the table saves
+ * work on transpositions without changing any score.
+ */
+public class AlphaBetaBot implements IReportingBot {
     private static final int DEPTH = 3; // Search depth
-    private static final int[][] smallBoardScores = {
-            {10_000, -10_000}, // Win/Lose
-            {5, 3, 3, 3, 3}, // Heuristic 2 scores
-            {2, 4} // Heuristic 3 scores
-    };
+    private static final int WIN_SCORE = 1_000_000;
+    private static final int SOLVER_NODES = 100_000; // Node budget for the proof-number solver
+    // Scores are from the point of view of the player to move at the root, so each one gets its own salt
+    private static final long[] SALTS = {0x632BE59BD9B4E019L, 0x8CB92BA72F3D8DD7L};
+    private static final int EXACT = 1;
+    private static final int LOWER = 2;  // the score is at least this
+    private static final int UPPER = 3;  // the score is at most this
+
+    // The evaluator follows every make/unmake, so a leaf is scored with a single read
+    private final IEvaluator evaluator;
+    private final int[][] moveBuffers = new int[DEPTH + 2][81];
+    private final TranspositionTable table;
+    private final ProofNumberSearch solver;
+    private final SearchStats stats = new SearchStats();
+    private volatile SearchReport lastReport = SearchReport.EMPTY;
+
+    public AlphaBetaBot() {
+        this(IEvaluator.createDefault());
+    }
 
-    private static final Random random = new Random();
+    public AlphaBetaBot(IEvaluator evaluator) {
+        this(evaluator, new TranspositionTable(18));
+    }
+
+    /**
+     * @param table used by both the alpha-beta search and the solver, and may be
+     *              shared with other bots that score positions with the same evaluator
+     */
+    public AlphaBetaBot(IEvaluator evaluator, TranspositionTable table) {
+        this.evaluator = evaluator;
+        this.table = table;
+        this.solver = new ProofNumberSearch(table);
+    }
 
     @Override
     public IMove doMove(IGameState state) {
-        IField field = state.getField();
-        List<IMove> availableMoves = field.getAvailableMoves();
+        stats.start();
+        stats.setBudgetMillis(state.getTimePerMove());
+        IMove move = search(state);
+        lastReport = stats.finish();
+        return move;
+    }
 
-        if (!availableMoves.isEmpty()) {
-            IMove bestMove = null;
-            double bestScore = Double.NEGATIVE_INFINITY;
+    @Override
+    public SearchReport getLastReport() {
+        return lastReport;
+    }
 
-            int currentPlayer = getCurrentPlayer(state);
+    private IMove search(IGameState state) {
+        SearchBoard board = SearchBoard.fromState(state);
+
+        // Close to a macro win the heuristic is of little help, so try to prove one first
+        if (ProofNumberSearch.isTactical(board)) {
+            long probes = table.getProbes();
+            long hits = table.getHits();
+            int result = solver.solve(board, SOLVER_NODES);
+            stats.addNodes(solver.getNodes());
+            stats.addProbes(table.getProbes() - probes, table.getHits() - hits);
+            if (result == ProofNumberSearch.PROVEN)
+                return SearchBoard.toMove(solver.getProvenMove());
+        }
+
+        board.setEvaluator(evaluator);
+        int[] availableMoves = moveBuffers[DEPTH + 1];
+        // Moves that are mirror images of each other have the same score
+        int count = Symmetry.representatives(board.getSymmetries(), availableMoves, board.getMoves(availableMoves));
+
+        if (count > 0) {
+            int bestMove = availableMoves[0];
+            double bestScore = Double.NEGATIVE_INFINITY;
 
-            //System.out.println("Current player: " + currentPlayer);
+            int currentPlayer = board.getCurrentPlayer();
 
-            for (IMove move : availableMoves) {
-               // System.out.println("Considering move: " + move.getX() + ", " + move.getY());
-                double score = alphaBeta(field, move, DEPTH, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, true, currentPlayer);
-                //System.out.println("Move score: " + score);
+            for (int i = 0; i < count; i++) {
+                int move = availableMoves[i];
+                board.makeMove(move);
+                double score = alphaBeta(board, DEPTH, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, false, currentPlayer);
+                board.unmakeMove();
                 if (score > bestScore) {
                     bestScore = score;
                     bestMove = move;
+                    stats.bestMove(move);
                 }
             }
+            stats.reachedDepth(DEPTH + 1);
 
-            //System.out.println("Best move: " + bestMove.getX() + ", " + bestMove.getY());
-            return bestMove;
+            return SearchBoard.toMove(bestMove);
         }
 
         return null; // No moves available
     }
 
-    private double alphaBeta(IField field, IMove move, int depth, double alpha, double beta, boolean maximizingPlayer, int currentPlayer) {
-        IGameState clonedState = cloneState(field);
-        simulateMove(clonedState, move);
+    private double alphaBeta(SearchBoard board, int depth, double alpha, double beta, boolean maximizingPlayer, int currentPlayer) {
+        stats.addNodes(1);
+        if (depth == 0 || board.isGameOver()) {
+            return evaluateState(board, depth, currentPlayer);
+        }
 
-        if (depth == 0 || clonedState.getField().getAvailableMoves().isEmpty()) {
-            return evaluateState(clonedState);
+        long key = board.getHash() ^ SALTS[currentPlayer];
+        long entry = table.probe(key);
+        stats.addProbes(1, entry == TranspositionTable.MISSING ? 0 : 1);
+        if (entry != TranspositionTable.MISSING && entryDepth(entry) == depth) {
+            double stored = entryScore(entry);
+            int bound = entryBound(entry);
+            if (bound == EXACT || (bound == LOWER && stored >= beta) || (bound == UPPER && stored <= alpha))
+                return stored;
         }
+        double value = search(board, depth, alpha, beta, maximizingPlayer, currentPlayer);
+        int bound = value <= alpha ? UPPER : value >= beta ? LOWER : EXACT;
+        table.store(key, (long) value << 32 | depth << 8 | bound);
+        return value;
+    }
 
-        List<IMove> availableMoves = clonedState.getField().getAvailableMoves();
+    private double search(SearchBoard board, int depth, double alpha, double beta, boolean maximizingPlayer, int currentPlayer) {
+        int[] availableMoves = moveBuffers[depth];
+        int count = board.getMoves(availableMoves);
 
         if (maximizingPlayer) {
             double maxEval = Double.NEGATIVE_INFINITY;
-            for (IMove nextMove : availableMoves) {
-                double eval = alphaBeta(clonedState.getField(), nextMove, depth - 1, alpha, beta, false, (currentPlayer + 1) % 2);
+            for (int i = 0; i < count; i++) {
+                board.makeMove(availableMoves[i]);
+                double eval = alphaBeta(board, depth - 1, alpha, beta, false, currentPlayer);
+                board.unmakeMove();
                 maxEval = Math.max(maxEval, eval);
                 alpha = Math.max(alpha, eval);
                 if (beta <= alpha) break;
@@ -70,8 +151,10 @@ public class AlphaBetaBot implements IBot {
             return maxEval;
         } else {
             double minEval = Double.POSITIVE_INFINITY;
-            for (IMove nextMove : availableMoves) {
-                double eval = alphaBeta(clonedState.getField(), nextMove, depth - 1, alpha, beta, true, (currentPlayer + 1) % 2);
+            for (int i = 0; i < count; i++) {
+                board.makeMove(availableMoves[i]);
+                double eval = alphaBeta(board, depth - 1, alpha, beta, true, currentPlayer);
+                board.unmakeMove();
                 minEval = Math.min(minEval, eval);
                 beta = Math.min(beta, eval);
                 if (beta <= alpha) break;
@@ -80,71 +163,36 @@ public class AlphaBetaBot implements IBot {
         }
     }
 
-    private IGameState cloneState(IField field) {
-        IGameState clonedState = new GameState();
-        clonedState.getField().setBoard(field.getBoard());
-        clonedState.getField().setMacroboard(field.getMacroboard());
-        return clonedState;
-    }
-
-    private void simulateMove(IGameState state, IMove move) {
-        int currentPlayer = getCurrentPlayer(state);
-        state.getField().getBoard()[move.getX()][move.getY()] = currentPlayer == 0 ? "0" : "1";
+    private static double entryScore(long entry) {
+        return (int) (entry >> 32);
     }
 
-    private int getCurrentPlayer(IGameState state) {
-        IField field = state.getField();
-        int totalMoves = field.getAvailableMoves().size();
-        return totalMoves % 2; // If totalMoves is even, it's Player 0's turn; otherwise, it's Player 1's turn
+    private static int entryDepth(long entry) {
+        return (int) (entry >>> 8) & 0xFF;
     }
 
-    private double evaluateState(IGameState state) {
-        // Use heuristic 3 for evaluation
-        int[] scores = calculateHeuristic3(state.getField());
-        System.out.println("Heuristic 3 scores: Player 0: " + scores[0] + ", Player 1: " + scores[1]);
-        return scores[0] - scores[1];
+    private static int entryBound(long entry) {
+        return (int) entry & 0xFF;
     }
 
-    private int[] calculateHeuristic3(IField field) {
-        int[] scores = new int[2]; // Player 0 and Player 1 scores
-
-        for (int i = 0; i < 9; i += 3) {
-            for (int j = 0; j < 9; j += 3) {
-                int score = smallBoardScores[2][getSmallBoardIndex(field, i, j)];
-                System.out.println("Small board score at (" + i + ", " + j + "): " + score);
-                if (field.getMacroboard()[i / 3][j / 3].equals("0")) {
-                    scores[0] += score;
-                } else if (field.getMacroboard()[i / 3][j / 3].equals("1")) {
-                    scores[1] += score;
-                }
-            }
+    // Scores the position for currentPlayer, preferring faster wins and slower losses
+    private double evaluateState(SearchBoard board, int depth, int currentPlayer) {
+        int winner = board.getWinner();
+        if (winner == currentPlayer) {
+            return WIN_SCORE + depth;
         }
-
-        return scores;
-    }
-
-    private int getSmallBoardIndex(IField field, int row, int col) {
-        int index = 0;
-        int power = 1;
-
-        for (int i = row; i < row + 3; i++) {
-            for (int j = col; j < col + 3; j++) {
-                if (field.getBoard()[i][j].equals("0")) {
-                    index += power;
-                } else if (field.getBoard()[i][j].equals("1")) {
-                    index += 2 * power;
-                }
-                power *= 3;
-            }
+        if (winner == 1 - currentPlayer) {
+            return -WIN_SCORE - depth;
         }
-
-        int result = index % 2;
-        System.out.println("Small board index at (" + row + ", " + col + "): " + result);
-        return result; // Ensure the index is in the range of 0 to 1
+        if (winner == SearchBoard.TIE) {
+            return 0;
+        }
+        int score = board.getEvaluator().evaluate();
+        return currentPlayer == 0 ? score : -score;
     }
 
     @Override
     public String getBotName() {
         return "Alpha Beta Bot";
     }
-}
\ No newline at end of file
+}
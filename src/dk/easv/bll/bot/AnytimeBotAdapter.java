@@ -0,0 +1,47 @@
+package dk.easv.bll.bot;
+
+import dk.easv.bll.game.IGameState;
+import dk.easv.bll.move.IMove;
+
+/**
+ * Lets a plain IBot be driven as an IAnytimeBot.
+ * The wrapped bot cannot be stopped, so the token is ignored and there is no
+ * best move until it returns.
+ */
+final class AnytimeBotAdapter implements IAnytimeBot {
+
+    private final IBot bot;
+    private volatile IMove lastMove;
+
+    AnytimeBotAdapter(IBot bot) {
+        this.bot = bot;
+    }
+
+    @Override
+    public IMove doMove(IGameState state, long deadlineMillis, CancellationToken token) {
+        lastMove = null;
+        IMove move = bot.doMove(state);
+        lastMove = move;
+        return move;
+    }
+
+    @Override
+    public IMove doMove(IGameState state) {
+        return bot.doMove(state);
+    }
+
+    @Override
+    public IMove getBestMoveSoFar() {
+        return lastMove;
+    }
+
+    @Override
+    public String getBotName() {
+        return bot.getBotName();
+    }
+
+    @Override
+    public String toString() {
+        return bot.toString();
+    }
+}
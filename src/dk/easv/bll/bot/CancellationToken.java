@@ -0,0 +1,54 @@
+package dk.easv.bll.bot;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tells a running search to stop.
+ * The game driver cancels the token, either directly or when the deadline passes,
+ * so a bot only has to poll isCancelled() in its search loop instead of reading
+ * the clock.
+ */
+public class CancellationToken {
+
+    private static final ScheduledThreadPoolExecutor TIMER = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "cancellation-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        TIMER.setRemoveOnCancelPolicy(true);
+    }
+
+    private volatile boolean cancelled;
+    private volatile ScheduledFuture<?> timer;
+
+    /**
+     * Creates a token that is only cancelled by calling cancel().
+     */
+    public CancellationToken() {
+    }
+
+    /**
+     * Creates a token that cancels itself when the deadline passes.
+     */
+    public static CancellationToken withDeadline(long deadlineMillis) {
+        CancellationToken token = new CancellationToken();
+        long delay = Math.max(0, deadlineMillis - System.currentTimeMillis());
+        token.timer = TIMER.schedule(token::cancel, delay, TimeUnit.MILLISECONDS);
+        return token;
+    }
+
+    public void cancel() {
+        cancelled = true;
+        ScheduledFuture<?> pending = timer;
+        if (pending != null)
+            pending.cancel(false);
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
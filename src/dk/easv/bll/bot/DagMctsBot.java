@@ -0,0 +1,87 @@
+package dk.easv.bll.bot;
+
+import dk.easv.bll.game.IGameState;
+import dk.easv.bll.move.IMove;
+import dk.easv.bll.search.DagMctsSearch;
+import dk.easv.bll.search.SearchBoard;
+import dk.easv.bll.search.SearchBudget;
+import dk.easv.bll.search.SearchReport;
+import dk.easv.bll.search.SearchStats;
+
+import java.util.SplittableRandom;
+
+/**
+ * Monte Carlo search where transposed positions share their statistics.
+ * The graph is kept between moves; positions behind the current one are dropped.
+ *
+ * The search runs until the game driver cancels it, see IAnytimeBot, or for a
+ * fixed number of playouts when given a node budget.
+ */
+public class DagMctsBot implements IAnytimeBot, IBudgetedBot, ISeededBot, IReportingBot {
+
+    private static final String BOTNAME = "DAG MCTS Bot";
+
+    private final DagMctsSearch search;
+    private SearchBudget budget = SearchBudget.time();
+    private volatile SearchReport lastReport = SearchReport.EMPTY;
+
+    public DagMctsBot() {
+        this(1);
+    }
+
+    /**
+     * @param threads number of threads searching the shared graph
+     */
+    public DagMctsBot(int threads) {
+        search = new DagMctsSearch(threads);
+    }
+
+    @Override
+    public IMove doMove(IGameState state, long deadlineMillis, CancellationToken token) {
+        long startMillis = System.currentTimeMillis();
+        SearchBoard board = SearchBoard.fromState(state);
+        if (board.isGameOver())
+            return null;
+
+        int cell = budget.isTimed()
+                ? search.search(board, token::isCancelled)
+                : search.searchPlayouts(board, budget.getNodes());
+        SearchStats stats = search.getStats();
+        stats.setBudgetMillis(budget.isTimed() ? Math.max(0, deadlineMillis - startMillis) : 0);
+        lastReport = stats.finish();
+        return SearchBoard.toMove(cell);
+    }
+
+    @Override
+    public IMove getBestMoveSoFar() {
+        int cell = search.getBestMoveSoFar();
+        return cell < 0 ? null : SearchBoard.toMove(cell);
+    }
+
+    @Override
+    public SearchReport getLastReport() {
+        return lastReport;
+    }
+
+    @Override
+    public void setSearchBudget(SearchBudget budget) {
+        this.budget = budget;
+    }
+
+    @Override
+    public SearchBudget getSearchBudget() {
+        return budget;
+    }
+
+    @Override
+    public void setRandom(SplittableRandom random) {
+        // A new generator is handed out per game, and an old graph would make the game depend on the last one
+        search.clear();
+        search.setSeedSource(random);
+    }
+
+    @Override
+    public String getBotName() {
+        return BOTNAME;
+    }
+}
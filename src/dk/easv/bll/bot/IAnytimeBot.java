@@ -0,0 +1,54 @@
+package dk.easv.bll.bot;
+
+import dk.easv.bll.game.IGameState;
+import dk.easv.bll.move.IMove;
+
+/**
+ * A bot that can be stopped at any time and still has a move to give.
+ * The game driver passes the deadline and a token that it cancels when the
+ * deadline passes, or earlier if it has to. The bot searches until the token is
+ * cancelled and then returns promptly.
+ *
+ * Plain IBots can be used wherever an IAnytimeBot is expected through IAnytimeBot.of().
+ */
+public interface IAnytimeBot extends IBot {
+
+    /**
+     * Searches for a move until the token is cancelled.
+     *
+     * @param state the current game state
+     * @param deadlineMillis the time (System.currentTimeMillis()) when the token will be cancelled
+     * @param token cancelled when the search has to stop
+     * @return the best move found
+     */
+    IMove doMove(IGameState state, long deadlineMillis, CancellationToken token);
+
+    /**
+     * The best move found so far by the running search, or the result of the last
+     * one. May be called from another thread while doMove is running.
+     * @return the move, or null if none has been found yet
+     */
+    IMove getBestMoveSoFar();
+
+    /**
+     * Searches for the state's time per move.
+     */
+    @Override
+    default IMove doMove(IGameState state) {
+        long deadline = System.currentTimeMillis() + state.getTimePerMove();
+        CancellationToken token = CancellationToken.withDeadline(deadline);
+        try {
+            return doMove(state, deadline, token);
+        }
+        finally {
+            token.cancel();
+        }
+    }
+
+    /**
+     * @return the bot itself if it is an IAnytimeBot, otherwise an adapter around it
+     */
+    static IAnytimeBot of(IBot bot) {
+        return bot instanceof IAnytimeBot ? (IAnytimeBot) bot : new AnytimeBotAdapter(bot);
+    }
+}
@@ -0,0 +1,13 @@
+package dk.easv.bll.bot;
+
+import dk.easv.bll.search.SearchBudget;
+
+/**
+ * A bot whose search can be limited by a node or playout count instead of the clock.
+ */
+public interface IBudgetedBot extends IBot {
+
+    void setSearchBudget(SearchBudget budget);
+
+    SearchBudget getSearchBudget();
+}
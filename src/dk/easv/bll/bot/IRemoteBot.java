@@ -0,0 +1,9 @@
+package dk.easv.bll.bot;
+
+/**
+ * A bot whose moves are computed somewhere else, so that it spends most of a move
+ * waiting on the network rather than on the CPU. Simulations against it can play
+ * many games at once, see SimulationScheduler.Mode.VIRTUAL.
+ */
+public interface IRemoteBot extends IBot {
+}
@@ -0,0 +1,15 @@
+package dk.easv.bll.bot;
+
+import dk.easv.bll.search.SearchReport;
+
+/**
+ * A bot that can tell what its search did for the move it just made.
+ * The game manager picks the report up after every move, see SearchMonitor.
+ */
+public interface IReportingBot extends IBot {
+
+    /**
+     * @return the report of the last move, SearchReport.EMPTY before the first one
+     */
+    SearchReport getLastReport();
+}
@@ -0,0 +1,14 @@
+package dk.easv.bll.bot;
+
+import java.util.SplittableRandom;
+
+/**
+ * A bot that takes all of its randomness from a generator it is given.
+ * The game driver hands it one per game, derived from a master seed (see GameSeeds),
+ * so a game can be replayed exactly. Bots that search on several threads split
+ * the generator once per thread.
+ */
+public interface ISeededBot extends IBot {
+
+    void setRandom(SplittableRandom random);
+}
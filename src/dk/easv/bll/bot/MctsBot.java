@@ -0,0 +1,159 @@
+package dk.easv.bll.bot;
+
+import dk.easv.bll.game.IGameState;
+import dk.easv.bll.move.IMove;
+import dk.easv.bll.search.IEvaluator;
+import dk.easv.bll.search.MctsSearch;
+import dk.easv.bll.search.NodeArena;
+import dk.easv.bll.search.PlayoutSimulator;
+import dk.easv.bll.search.SearchBoard;
+import dk.easv.bll.search.SearchBudget;
+import dk.easv.bll.search.SearchReport;
+import dk.easv.bll.search.SearchStats;
+
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+
+/**
+ * UCT Monte Carlo tree search with a fixed memory budget.
+ * The tree is kept from one move to the next: when it is our turn again the root
+ * is moved down past our own move and the opponent's reply.
+ *
+ * Where the tree lives is picked when the bot is constructed, e.g. for deep analysis:
+ * new MctsBot(() -> OffHeapNodeArena.ofBytes(8L << 30))
+ *
+ * Playouts run to the end of the game unless a cutoff is given, in which case
+ * they stop after that many plies and the position is scored by the evaluator.
+ *
+ * The search runs until the game driver cancels it, see IAnytimeBot, or for a
+ * fixed number of playouts when given a node budget.
+ */
+public class MctsBot implements IAnytimeBot, IBudgetedBot, ISeededBot, IReportingBot {
+
+    private static final String BOTNAME = "MCTS Bot";
+    private static final long DEFAULT_TREE_BYTES = 32L * 1024 * 1024;
+
+    private final Supplier<NodeArena> arenaFactory;
+    private final int playoutCutoff;
+    private volatile MctsSearch search;
+    private SearchBudget budget = SearchBudget.time();
+    private SplittableRandom random = new SplittableRandom();
+    private SearchBoard lastBoard; // The board right after our previous move
+    private volatile SearchReport lastReport = SearchReport.EMPTY;
+
+    public MctsBot() {
+        this(DEFAULT_TREE_BYTES);
+    }
+
+    /**
+     * @param treeBytes hard cap on the memory used by the search tree
+     */
+    public MctsBot(long treeBytes) {
+        this(() -> NodeArena.ofBytes(treeBytes));
+    }
+
+    /**
+     * @param arenaFactory creates the node storage, called once on the first move
+     */
+    public MctsBot(Supplier<NodeArena> arenaFactory) {
+        this(arenaFactory, PlayoutSimulator.FULL_GAME);
+    }
+
+    /**
+     * @param arenaFactory creates the node storage, called once on the first move
+     * @param playoutCutoff plies before a playout is cut off and evaluated, or PlayoutSimulator.FULL_GAME
+     */
+    public MctsBot(Supplier<NodeArena> arenaFactory, int playoutCutoff) {
+        this.arenaFactory = arenaFactory;
+        this.playoutCutoff = playoutCutoff;
+    }
+
+    @Override
+    public IMove doMove(IGameState state, long deadlineMillis, CancellationToken token) {
+        long startMillis = System.currentTimeMillis();
+        SearchBoard board = SearchBoard.fromState(state);
+        if (board.isGameOver())
+            return null;
+
+        // The arena is only allocated once the bot actually plays
+        if (search == null) {
+            search = new MctsSearch(arenaFactory.get(), random);
+            if (playoutCutoff != PlayoutSimulator.FULL_GAME)
+                search.setSimulator(new PlayoutSimulator(playoutCutoff, IEvaluator.createDefault()));
+        }
+
+        int opponentMove = findOpponentMove(board);
+        if (opponentMove >= 0)
+            search.advance(opponentMove);
+        else
+            search.reset();
+
+        int cell = budget.isTimed()
+                ? search.search(board, token::isCancelled)
+                : search.searchPlayouts(board, budget.getNodes());
+        SearchStats stats = search.getStats();
+        stats.setBudgetMillis(budget.isTimed() ? Math.max(0, deadlineMillis - startMillis) : 0);
+        lastReport = stats.finish();
+
+        search.advance(cell);
+        lastBoard = new SearchBoard(board);
+        lastBoard.makeMove(cell);
+        return SearchBoard.toMove(cell);
+    }
+
+    @Override
+    public void setSearchBudget(SearchBudget budget) {
+        this.budget = budget;
+    }
+
+    @Override
+    public SearchBudget getSearchBudget() {
+        return budget;
+    }
+
+    @Override
+    public void setRandom(SplittableRandom random) {
+        this.random = random;
+        MctsSearch current = search;
+        if (current != null)
+            current.setRandom(random);
+    }
+
+    @Override
+    public SearchReport getLastReport() {
+        return lastReport;
+    }
+
+    @Override
+    public IMove getBestMoveSoFar() {
+        MctsSearch current = search;
+        int cell = current == null ? -1 : current.getBestMoveSoFar();
+        return cell < 0 ? null : SearchBoard.toMove(cell);
+    }
+
+    // The single stone added since our last move, or -1 if the boards do not line up (e.g. a new game)
+    private int findOpponentMove(SearchBoard board) {
+        if (lastBoard == null || lastBoard.getCurrentPlayer() == board.getCurrentPlayer())
+            return -1;
+        int opponent = lastBoard.getCurrentPlayer();
+        int found = -1;
+        for (int b = 0; b < 9; b++) {
+            if (board.getMask(1 - opponent, b) != lastBoard.getMask(1 - opponent, b))
+                return -1;
+            int added = board.getMask(opponent, b) & ~lastBoard.getMask(opponent, b);
+            if ((lastBoard.getMask(opponent, b) & ~board.getMask(opponent, b)) != 0)
+                return -1;
+            if (added == 0)
+                continue;
+            if (found >= 0 || Integer.bitCount(added) != 1)
+                return -1;
+            found = SearchBoard.CELL_AT[b][Integer.numberOfTrailingZeros(added)];
+        }
+        return found;
+    }
+
+    @Override
+    public String getBotName() {
+        return BOTNAME;
+    }
+}
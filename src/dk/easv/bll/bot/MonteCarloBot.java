@@ -1,67 +1,111 @@
 package dk.easv.bll.bot;
 
 import dk.easv.bll.field.IField;
+import dk.easv.bll.field.Symmetry;
 import dk.easv.bll.game.GameState;
 import dk.easv.bll.game.IGameState;
 import dk.easv.bll.move.IMove;
 import dk.easv.bll.move.Move;
+import dk.easv.bll.search.ProofNumberSearch;
+import dk.easv.bll.search.SearchBoard;
+import dk.easv.bll.search.SearchBudget;
+import dk.easv.bll.search.SearchReport;
+import dk.easv.bll.search.SearchStats;
+import dk.easv.bll.search.TranspositionTable;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 
-public class MonteCarloBot implements IBot {
+public class MonteCarloBot implements IBudgetedBot, ISeededBot, IReportingBot {
 
     private static final String BOTNAME = "Monte Carlo Bot";
-    private Random rand = new Random();
+    private SplittableRandom rand = new SplittableRandom();
     private static final int SIMULATION_COUNT = 100;
-    private static int TIME_LIMIT = 111; // 1000 milliseconds
+    private static final int MIN_TIME_PER_CANDIDATE = 1; // milliseconds
     private static final double EXPLORATION_PARAMETER = 6; // UCT exploration parameter
+    private static final int SOLVER_NODES = 100_000; // Node budget for the proof-number solver
     private String whatPlayerAmI;
+    private SearchBudget budget = SearchBudget.time();
+    private final TranspositionTable table;
+    private final ProofNumberSearch solver;
+    private final SearchStats stats = new SearchStats();
+    private volatile SearchReport lastReport = SearchReport.EMPTY;
+
+    public MonteCarloBot() {
+        this(new TranspositionTable(18));
+    }
+
+    /**
+     * @param table for the solver, and may be shared with other bots; the
+     *              simulations play on copies of the game state and do not use it
+     */
+    public MonteCarloBot(TranspositionTable table) {
+        this.table = table;
+        this.solver = new ProofNumberSearch(table);
+    }
 
     @Override
     public IMove doMove(IGameState state) {
-        List<IMove> moves = state.getField().getAvailableMoves();
-        int originalTimeLimit = TIME_LIMIT;
+        stats.start();
+        stats.setBudgetMillis(budget.isTimed() ? state.getTimePerMove() : 0);
+        IMove move = search(state);
+        lastReport = stats.finish();
+        return move;
+    }
 
-        // Adjust TIME_LIMIT based on the size of the available moves list
-        if (moves.size() > 9) {
-            TIME_LIMIT = 10;
-        } else {
-            TIME_LIMIT = 111;
-        }
+    @Override
+    public SearchReport getLastReport() {
+        return lastReport;
+    }
 
-        System.out.println("Available Moves: " + moves.size());
+    private IMove search(IGameState state) {
+        List<IMove> moves = state.getField().getAvailableMoves();
 
         if (!moves.isEmpty()) {
-            // Check if any available moves are winning moves
-            for (IMove move : moves) {
-                if (isWin(state.getField().getBoard(), move, "1")) {
-                    System.out.println("Winning Move: " + move.getX() + ", " + move.getY());
-                    return move;
-                }
+            // A proven macro win makes the simulations below unnecessary
+            SearchBoard board = SearchBoard.fromState(state);
+            if (ProofNumberSearch.isTactical(board)) {
+                long probes = table.getProbes();
+                long hits = table.getHits();
+                int result = solver.solve(board, SOLVER_NODES);
+                stats.addNodes(solver.getNodes());
+                stats.addProbes(table.getProbes() - probes, table.getHits() - hits);
+                if (result == ProofNumberSearch.PROVEN)
+                    return SearchBoard.toMove(solver.getProvenMove());
             }
 
+            // Check if any available moves are winning moves
             for (IMove move : moves) {
-                if (isWin(state.getField().getBoard(), move, "1")) {
-                    System.out.println("Winning Move: " + move.getX() + ", " + move.getY());
+                if (isWin(state.getField().getBoard(), move, "1"))
                     return move;
-                }
             }
 
+            // Mirror images of a move score the same, so only one of each is simulated
+            List<IMove> candidates = Symmetry.representatives(state.getField().getSymmetries(), moves);
+
+            // The move's budget is shared evenly between the candidate moves
+            int timeLimit = Math.max(MIN_TIME_PER_CANDIDATE, state.getTimePerMove() / candidates.size());
+            long playoutLimit = Math.max(1, budget.getNodes() / candidates.size());
+
             IMove bestMove = null;
             double bestUCBValue = Double.NEGATIVE_INFINITY;
 
             // Perform Monte Carlo Tree Search for non-winning moves
-            for (IMove move : moves) {
+            for (IMove move : candidates) {
                 long startTime = System.currentTimeMillis(); // Reset startTime for each move
                 int simulations = 0;
+                long playouts = 0;
                 double moveUCBValue = 0; // Initialize move-specific UCB value
 
-                // Perform simulations until time limit is reached
-                while (System.currentTimeMillis() - startTime < TIME_LIMIT) {
+                // Perform simulations until the time limit, or the playout count of a node budget, is reached.
+                // Simulation k runs k playouts, so a node budget is charged per playout, not per simulation
+                while (budget.isTimed()
+                        ? System.currentTimeMillis() - startTime < timeLimit
+                        : playouts < playoutLimit) {
                     simulations++;
+                    playouts += simulations;
                     IGameState simulatedState = new GameState(state);
                     int score = uctSimulateMove(simulatedState, move, simulations);
                     double ucbValue = calculateUCBValue(simulations, score);
@@ -77,28 +121,39 @@ public class MonteCarloBot implements IBot {
                 if (moveUCBValue > bestUCBValue) {
                     bestUCBValue = moveUCBValue;
                     bestMove = move;
+                    stats.bestMove(move.getX() * 9 + move.getY());
                 }
 
             }
 
-            // Reset TIME_LIMIT to its original value
-            TIME_LIMIT = originalTimeLimit;
-
             return bestMove;
         }
 
-        // Reset TIME_LIMIT to its original value
-        TIME_LIMIT = originalTimeLimit;
-
         return null;
     }
 
+    @Override
+    public void setSearchBudget(SearchBudget budget) {
+        this.budget = budget;
+    }
+
+    @Override
+    public SearchBudget getSearchBudget() {
+        return budget;
+    }
+
+    @Override
+    public void setRandom(SplittableRandom random) {
+        rand = random;
+    }
+
     private int uctSimulateMove(IGameState state, IMove move, int simulations) {
         // Simulate moves using UCT strategy
         int totalScore = 0;
         for (int i = 0; i < simulations; i++) {
             IGameState simulatedState = new GameState(state);
             simulateRandomMoves(simulatedState, move);
+            stats.addPlayouts(1);
             int score = evaluateState(simulatedState);
             totalScore += score;
         }
@@ -112,6 +167,7 @@ public class MonteCarloBot implements IBot {
 
         // Apply the initial move
         currentState.getField().getMacroboard()[initialMove.getX() / 3][initialMove.getY() / 3] = currentPlayerId;
+        int plies = 1;
 
         while (!state.getField().isFull()) {
             List<IMove> availableMoves = currentState.getField().getAvailableMoves();
@@ -123,7 +179,10 @@ public class MonteCarloBot implements IBot {
             int randomMacroY = randomMove.getY() / 3;
             currentState.getField().getMacroboard()[randomMacroX][randomMacroY] = currentPlayerId;
             currentPlayerId = currentPlayerId.equals("0") ? "1" : "0";
+            plies++;
         }
+        stats.addNodes(plies);
+        stats.reachedDepth(plies);
     }
 
     private int evaluateState(IGameState state) {
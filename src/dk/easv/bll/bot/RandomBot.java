@@ -5,12 +5,12 @@ import dk.easv.bll.game.IGameState;
 import dk.easv.bll.move.IMove;
 
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 
-public class RandomBot implements IBot {
+public class RandomBot implements ISeededBot {
 
     private static final String BOTNAME = "Random Dude";
-    private Random rand = new Random();
+    private SplittableRandom rand = new SplittableRandom();
 
     /**
      * Makes a turn. Edit this method to make your bot smarter.
@@ -28,6 +28,11 @@ public class RandomBot implements IBot {
         return null;
     }
 
+    @Override
+    public void setRandom(SplittableRandom random) {
+        rand = random;
+    }
+
     @Override
     public String getBotName() {
         return BOTNAME;
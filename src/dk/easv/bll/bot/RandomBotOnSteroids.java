@@ -7,11 +7,11 @@ import dk.easv.bll.move.IMove;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 
-public class RandomBotOnSteroids implements IBot {
+public class RandomBotOnSteroids implements ISeededBot {
     private static final String BOTNAME = "Random on Steroids";
-    Random rand = new Random();
+    SplittableRandom rand = new SplittableRandom();
 
     @Override
     public IMove doMove(IGameState state) {
@@ -77,6 +77,11 @@ public class RandomBotOnSteroids implements IBot {
         return winningMoves;
     }
 
+    @Override
+    public void setRandom(SplittableRandom random) {
+        rand = random;
+    }
+
     @Override
     public String getBotName() {
         return BOTNAME;
@@ -19,27 +19,42 @@ import java.net.http.HttpResponse.BodyHandlers;
  *
  * This client implementation requires the Google GSon library.
  *
+ * The server can be changed with -Duttt.teacherbot.uri, e.g. to a local BotServer
+ * when testing without the VPN.
+ *
  */
-public class TeacherBotREST implements IBot{
+public class TeacherBotREST implements IRemoteBot{
     private static final String BOT_NAME = "Teacher Bot (online)";
     // This bot requires a VPN connection to the EASV network
     private static final String SERVER_URI = "http://10.176.88.51:4567/doMove";
+    // One client for all the bots, so that the games of a simulation share its connections
+    private static final HttpClient CLIENT = HttpClient.newHttpClient();
+    private static final Gson GSON = new Gson();
+
+    private final URI serverUri;
+
+    public TeacherBotREST() {
+        this(URI.create(System.getProperty("uttt.teacherbot.uri", SERVER_URI)));
+    }
+
+    public TeacherBotREST(URI serverUri) {
+        this.serverUri = serverUri;
+    }
+
     @Override
     public IMove doMove(IGameState state) {
-        Gson gson = new Gson();
-        String jsonState = gson.toJson(state);
+        String jsonState = GSON.toJson(state);
 
         HttpRequest request =
-                HttpRequest.newBuilder(URI.create(SERVER_URI))
+                HttpRequest.newBuilder(serverUri)
                 .header("Accept", "application/json")
                 .header("Content-Type", "application/json")
                 .PUT(HttpRequest.BodyPublishers.ofString(jsonState))
                 .build();
 
-        var client = HttpClient.newHttpClient();
         HttpResponse<String> response = null;
         try {
-            response = client.send(request, BodyHandlers.ofString());
+            response = CLIENT.send(request, BodyHandlers.ofString());
 
         // This is not the most graceful exception handling, but we want the bot to die
         // if the connection fails. Normally we could retry, however that would violate
@@ -51,7 +66,7 @@ public class TeacherBotREST implements IBot{
             throw new RuntimeException("Connection problems with "+ BOT_NAME,e);
         }
 
-        Move move = gson.fromJson(response.body(), Move.class);
+        Move move = GSON.fromJson(response.body(), Move.class);
         return move;
     }
 
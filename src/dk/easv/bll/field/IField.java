@@ -69,5 +69,13 @@ public interface IField {
      * @param macroboard the Macroboard to set (the overarching 3x3 board)
      */
     void setMacroboard(String[][] macroboard);
-    
+
+    /**
+     * The symmetries of the square that leave the whole position unchanged.
+     * @return the stabilizer as a bit mask of transforms, see Symmetry
+     */
+    default int getSymmetries() {
+        return Symmetry.stabilizer(this);
+    }
+
 }
@@ -0,0 +1,144 @@
+package dk.easv.bll.field;
+
+import dk.easv.bll.move.IMove;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The 8 symmetries of the square (rotations and reflections) applied to the board.
+ * A symmetry of the 9x9 board also maps every micro-board onto a micro-board, so
+ * the same transform numbers work for cells (x*9+y), micro-boards and the cells
+ * inside a micro-board (both numbered x*3+y).
+ *
+ * A set of transforms is a bit mask with bit t set for transform t. Transform 0 is
+ * the identity, so the stabilizer of any position contains at least IDENTITY.
+ * Positions that are their own mirror image have equivalent moves, and a search
+ * only needs to look at one move of each class.
+ */
+public final class Symmetry {
+
+    public static final int COUNT = 8;
+    public static final int IDENTITY = 1;
+
+    private static final int[][] CELLS = new int[COUNT][81];
+    private static final int[][] SMALL = new int[COUNT][9];
+    private static final int[][] MASKS = new int[COUNT][512];
+
+    static {
+        for (int t = 0; t < COUNT; t++) {
+            for (int x = 0; x < 9; x++)
+                for (int y = 0; y < 9; y++)
+                    CELLS[t][x * 9 + y] = apply(t, x, y, 8);
+            for (int x = 0; x < 3; x++)
+                for (int y = 0; y < 3; y++)
+                    SMALL[t][x * 3 + y] = apply(t, x, y, 2);
+            for (int mask = 0; mask < 512; mask++) {
+                int mapped = 0;
+                for (int i = 0; i < 9; i++)
+                    if ((mask & (1 << i)) != 0)
+                        mapped |= 1 << SMALL[t][i];
+                MASKS[t][mask] = mapped;
+            }
+        }
+    }
+
+    private Symmetry() {
+    }
+
+    // Bit 0 mirrors x, bit 1 mirrors y, bit 2 swaps x and y afterwards
+    private static int apply(int t, int x, int y, int max) {
+        if ((t & 1) != 0) x = max - x;
+        if ((t & 2) != 0) y = max - y;
+        return (t & 4) != 0 ? y * (max + 1) + x : x * (max + 1) + y;
+    }
+
+    /**
+     * @return the cell (x*9+y) that transform t moves the given cell to
+     */
+    public static int transformCell(int t, int cell) {
+        return CELLS[t][cell];
+    }
+
+    /**
+     * @return the micro-board, or cell inside a micro-board, that transform t moves index to
+     */
+    public static int transformSmall(int t, int index) {
+        return SMALL[t][index];
+    }
+
+    /**
+     * @return the 9 bit mask of a micro-board with transform t applied to its cells
+     */
+    public static int transformMask(int t, int mask) {
+        return MASKS[t][mask];
+    }
+
+    /**
+     * @return true if no transform but the identity leaves the position unchanged
+     */
+    public static boolean isTrivial(int stabilizer) {
+        return stabilizer == IDENTITY;
+    }
+
+    /**
+     * The transforms that map the field onto itself, including the micro-boards
+     * that are won or available for the next move.
+     * @return the stabilizer as a bit mask of transforms
+     */
+    public static int stabilizer(IField field) {
+        String[][] board = field.getBoard();
+        String[][] macroboard = field.getMacroboard();
+        int stabilizer = IDENTITY;
+        for (int t = 1; t < COUNT; t++)
+            if (fixes(t, board, 9, CELLS[t]) && fixes(t, macroboard, 3, SMALL[t]))
+                stabilizer |= 1 << t;
+        return stabilizer;
+    }
+
+    private static boolean fixes(int t, String[][] grid, int size, int[] map) {
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                int mapped = map[x * size + y];
+                if (!grid[x][y].equals(grid[mapped / size][mapped % size]))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Keeps one cell of every class of equivalent cells, the lowest, and moves the
+     * kept cells to the front of the array in their original order.
+     * @return the number of cells kept
+     */
+    public static int representatives(int stabilizer, int[] cells, int count) {
+        if (isTrivial(stabilizer))
+            return count;
+        int kept = 0;
+        for (int i = 0; i < count; i++)
+            if (isRepresentative(stabilizer, cells[i]))
+                cells[kept++] = cells[i];
+        return kept;
+    }
+
+    /**
+     * @return the moves with one move kept of every class of equivalent moves
+     */
+    public static List<IMove> representatives(int stabilizer, List<IMove> moves) {
+        if (isTrivial(stabilizer))
+            return moves;
+        List<IMove> kept = new ArrayList<>();
+        for (IMove move : moves)
+            if (isRepresentative(stabilizer, move.getX() * 9 + move.getY()))
+                kept.add(move);
+        return kept;
+    }
+
+    private static boolean isRepresentative(int stabilizer, int cell) {
+        for (int t = 1; t < COUNT; t++)
+            if ((stabilizer & (1 << t)) != 0 && CELLS[t][cell] < cell)
+                return false;
+        return true;
+    }
+}
@@ -1,9 +1,14 @@
 package dk.easv.bll.game;
 
+import dk.easv.bll.bot.CancellationToken;
+import dk.easv.bll.bot.IAnytimeBot;
 import dk.easv.bll.bot.IBot;
+import dk.easv.bll.bot.IReportingBot;
 import dk.easv.bll.field.IField;
 import dk.easv.bll.move.IMove;
 import dk.easv.bll.move.Move;
+import dk.easv.bll.search.SearchMonitor;
+import dk.easv.bll.search.SearchReport;
 
 /**
  * This is a proposed GameManager for Ultimate Tic-Tac-Toe,
@@ -38,6 +43,13 @@ public class GameManager {
     private IBot bot = null;
     private IBot bot2 = null;
     private volatile GameOverState gameOver = GameOverState.Active;
+    private TimeManager timeManager = null;
+    private final long[] remainingMillis = new long[2];
+    private long thinkNanos;
+    private final SearchReport[] lastReports = {SearchReport.EMPTY, SearchReport.EMPTY};
+    private IMove lastMove = null;
+    private MoveWatchdog watchdog = null;
+    private boolean timedOut = false;
 
     public void setGameOver(GameOverState state) {
         gameOver = state;
@@ -57,6 +69,65 @@ public class GameManager {
     {
         return currentState;
     }
+
+    /**
+     * Sets the clock for the game and resets both players' remaining time.
+     * Without one, each move gets the current state's time per move.
+     */
+    public void setTimeControl(TimeControl timeControl) {
+        timeManager = new TimeManager(timeControl);
+        remainingMillis[0] = timeControl.getBaseMillis();
+        remainingMillis[1] = timeControl.getBaseMillis();
+    }
+
+    public TimeManager getTimeManager() {
+        if (timeManager == null)
+            setTimeControl(TimeControl.perMove(currentState.getTimePerMove()));
+        return timeManager;
+    }
+
+    /**
+     * @return the time left on a player's clock, only meaningful when playing with a clock
+     */
+    public long getRemainingMillis(int player) {
+        return remainingMillis[player];
+    }
+
+    /**
+     * @return the search report of the player's last move, SearchReport.EMPTY if its bot does not report
+     */
+    public SearchReport getLastReport(int player) {
+        return lastReports[player];
+    }
+
+    /**
+     * @return the last legal move played, null before the first one
+     */
+    public IMove getLastMove() {
+        return lastMove;
+    }
+
+    /**
+     * Has every bot move watched, so a bot that misses its hard deadline by more
+     * than the watchdog's grace margin can lose by forfeit. Without a watchdog the
+     * game waits for a bot however long it takes.
+     */
+    public void setMoveWatchdog(MoveWatchdog watchdog) {
+        this.watchdog = watchdog;
+    }
+
+    public MoveWatchdog getMoveWatchdog() {
+        return watchdog;
+    }
+
+    /**
+     * @return true if the last bot move failed because the bot ran out of time
+     *         rather than because its move was illegal
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
     private boolean playerGoesFirst = false;
     /**
      * Set's the currentState so the game can begin.
@@ -109,6 +180,7 @@ public class GameManager {
             return false;
         
         updateBoard(move);
+        lastMove = move;
         currentPlayer = (currentPlayer + 1) % 2;
         
         return true;
@@ -126,13 +198,11 @@ public class GameManager {
         //Check if player is bot, if so, get bot input and update the state based on that.
         if(mode == GameMode.HumanVsBot && currentPlayer == 1 && playerGoesFirst)
         {
-             IMove botMove = bot.doMove(new GameState(currentState));
-             return updateGame(botMove);
+             return playBotMove(bot);
         }
         else if(mode == GameMode.HumanVsBot && !playerGoesFirst && currentPlayer == 0)
         {
-            IMove botMove = bot.doMove(new GameState(currentState));
-            return updateGame(botMove);
+            return playBotMove(bot);
         }
         
         //Check bot is not equal to null, and throw an exception if it is.
@@ -145,14 +215,84 @@ public class GameManager {
             assert(bot != null);
             assert(bot2 != null);
 
-            IMove botMove = currentPlayer == 0 ? bot.doMove(new GameState(currentState)) : bot2.doMove(new GameState(currentState));
-
-            return updateGame(botMove);
+            return playBotMove(currentPlayer == 0 ? bot : bot2);
         }
         return false;
     }
 
+    /**
+     * Gets a move from the bot and plays it. The time spent outside the bot is
+     * reported to the time manager, and with a clock the mover's time is charged.
+     * The bot's search report, if it has one, goes to the SearchMonitor.
+     * A bot that runs out of time under the watchdog makes no move, and false is returned.
+     */
+    private Boolean playBotMove(IBot player)
+    {
+        long start = System.nanoTime();
+        int mover = currentPlayer;
+        TimeManager manager = getTimeManager();
+        IGameState state = new GameState(currentState);
+        MoveBudget budget = manager.allocate(state, remainingMillis[mover]);
+
+        IMove botMove = requestMove(player, state, budget);
+        long used = System.currentTimeMillis() - budget.getStartMillis();
+        boolean valid = botMove != null && updateGame(botMove);
+
+        manager.recordOverhead(System.nanoTime() - start - thinkNanos);
+        // After the overhead is measured, the monitor's first use also starts JMX
+        if (player instanceof IReportingBot) {
+            lastReports[mover] = ((IReportingBot) player).getLastReport();
+            SearchMonitor.get().record(player.getBotName(), lastReports[mover]);
+        }
+        if (!manager.getTimeControl().isPerMove())
+            remainingMillis[mover] = Math.max(0, remainingMillis[mover] - used) + manager.getTimeControl().getIncrementMillis();
+        return valid;
+    }
+
+    /**
+     * Asks a bot for its next move on a copy of the current state.
+     * The copy's time per move is set to the soft budget, for bots that read it.
+     * An IAnytimeBot gets the soft deadline and a token that is cancelled when it
+     * passes. If it returns no move, its best move so far is used.
+     * With a watchdog null is returned for a bot that ran out of time.
+     */
+    private IMove requestMove(IBot player, IGameState state, MoveBudget budget)
+    {
+        state.setTimePerMove(budget.getSoftMillis());
+        long start = System.nanoTime();
+        timedOut = false;
+        try {
+            if (!(player instanceof IAnytimeBot)) {
+                if (watchdog == null)
+                    return player.doMove(state);
+                return watchdog.awaitMove(player, () -> player.doMove(state), budget, null);
+            }
+
+            IAnytimeBot anytimeBot = (IAnytimeBot) player;
+            CancellationToken token = CancellationToken.withDeadline(budget.getSoftDeadline());
+            try {
+                if (watchdog == null)
+                    return anytimeMove(anytimeBot, state, budget, token);
+                return watchdog.awaitMove(player, () -> anytimeMove(anytimeBot, state, budget, token), budget, token);
+            }
+            finally {
+                token.cancel();
+            }
+        }
+        catch (MoveWatchdog.MoveTimeoutException ex) {
+            timedOut = true;
+            return null;
+        }
+        finally {
+            thinkNanos = System.nanoTime() - start;
+        }
+    }
 
+    private static IMove anytimeMove(IAnytimeBot bot, IGameState state, MoveBudget budget, CancellationToken token)
+    {
+        IMove move = bot.doMove(state, budget.getSoftDeadline(), token);
+        return move != null ? move : bot.getBestMoveSoFar();
+    }
 
     private Boolean verifyMoveLegality(IMove move)
     {
@@ -0,0 +1,67 @@
+package dk.easv.bll.game;
+
+import dk.easv.bll.game.stats.GameResult;
+
+/**
+ * How a game between two bots ended, and how long each move took.
+ * Player 0 made the even plies and player 1 the odd ones.
+ */
+public class GameOutcome {
+
+    private final GameResult.Winner winner;
+    private final boolean forfeit;
+    private final long[] moveNanos;
+    private final byte[] cells;
+
+    public GameOutcome(GameResult.Winner winner, boolean forfeit, long[] moveNanos) {
+        this(winner, forfeit, moveNanos, new byte[0]);
+    }
+
+    /**
+     * @param cells the moves that were played, as cells x*9+y; after a forfeit
+     *              there is one ply more than there are moves, the illegal or missing one
+     */
+    public GameOutcome(GameResult.Winner winner, boolean forfeit, long[] moveNanos, byte[] cells) {
+        this.winner = winner;
+        this.forfeit = forfeit;
+        this.moveNanos = moveNanos;
+        this.cells = cells;
+    }
+
+    public GameResult.Winner getWinner() {
+        return winner;
+    }
+
+    /**
+     * @return true if the game was lost by an illegal move, or by running out of
+     *         time under a MoveWatchdog, rather than played out
+     */
+    public boolean isForfeit() {
+        return forfeit;
+    }
+
+    public int getPlies() {
+        return moveNanos.length;
+    }
+
+    /**
+     * @return the time the game manager spent getting the move of the given ply
+     */
+    public long getMoveNanos(int ply) {
+        return moveNanos[ply];
+    }
+
+    /**
+     * @return the number of moves played, which leaves out the last ply of a forfeit
+     */
+    public int getMoves() {
+        return cells.length;
+    }
+
+    /**
+     * @return the cell (x*9+y) played in the given ply
+     */
+    public int getCell(int ply) {
+        return cells[ply];
+    }
+}
@@ -0,0 +1,122 @@
+package dk.easv.bll.game;
+
+import dk.easv.bll.bot.IBot;
+import dk.easv.bll.bot.IRemoteBot;
+import dk.easv.bll.game.stats.GameResult;
+import dk.easv.bll.move.IMove;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Plays whole games between two bots without any user interface, for simulations
+ * in the GUI as well as headless tournaments. The bots are reused between games
+ * and are re-seeded for each one, see GameSeeds.
+ */
+public class GameRunner {
+
+    private final TimeControl timeControl;
+    private final MoveWatchdog watchdog;
+    private final ExecutorService carriers;
+
+    public GameRunner(TimeControl timeControl) {
+        this(timeControl, null, null);
+    }
+
+    /**
+     * A runner whose bots lose by forfeit when they miss the hard deadline of a
+     * move by more than the watchdog's grace margin, see MoveWatchdog.
+     */
+    public GameRunner(TimeControl timeControl, MoveWatchdog watchdog) {
+        this(timeControl, watchdog, null);
+    }
+
+    private GameRunner(TimeControl timeControl, MoveWatchdog watchdog, ExecutorService carriers) {
+        this.timeControl = timeControl;
+        this.watchdog = watchdog;
+        this.carriers = carriers;
+    }
+
+    /**
+     * A runner for the same time control that computes the moves of local bots on
+     * the given pool, while the game's own thread only waits. Remote bots still move
+     * on the game's thread, see IRemoteBot.
+     */
+    GameRunner withCarriers(ExecutorService carriers) {
+        return new GameRunner(timeControl, watchdog, carriers);
+    }
+
+    public TimeControl getTimeControl() {
+        return timeControl;
+    }
+
+    /**
+     * @return the watchdog the moves are played under, null if there is none
+     */
+    public MoveWatchdog getMoveWatchdog() {
+        return watchdog;
+    }
+
+    /**
+     * Plays one game to the end, bot0 moving first.
+     * A bot that makes an illegal move, or runs out of time under the watchdog,
+     * loses the game by forfeit.
+     */
+    public GameOutcome play(IBot bot0, IBot bot1, long masterSeed, long game) {
+        GameSeeds.seedBots(GameSeeds.forGame(masterSeed, game), bot0, bot1);
+        GameState state = new GameState();
+        if (timeControl.isPerMove())
+            state.setTimePerMove((int) timeControl.getBaseMillis());
+        GameManager manager = new GameManager(state, bot0, bot1);
+        manager.setTimeControl(timeControl);
+        manager.setMoveWatchdog(watchdog);
+
+        long[] moveNanos = new long[81];
+        byte[] cells = new byte[81];
+        int plies = 0;
+        while (manager.getGameOver() == GameManager.GameOverState.Active
+                && !state.getField().getAvailableMoves().isEmpty()) {
+            int mover = manager.getCurrentPlayer();
+            boolean valid = move(manager, mover == 0 ? bot0 : bot1, moveNanos, plies++);
+            if (!valid) {
+                GameResult.Winner winner = mover == 0 ? GameResult.Winner.player1 : GameResult.Winner.player0;
+                return new GameOutcome(winner, true, Arrays.copyOf(moveNanos, plies), Arrays.copyOf(cells, plies - 1));
+            }
+            IMove move = manager.getLastMove();
+            cells[plies - 1] = (byte) (move.getX() * 9 + move.getY());
+        }
+
+        GameResult.Winner winner = GameResult.Winner.tie;
+        if (manager.getGameOver() == GameManager.GameOverState.Win)
+            winner = manager.getCurrentPlayer() == 1 ? GameResult.Winner.player0 : GameResult.Winner.player1;
+        return new GameOutcome(winner, false, Arrays.copyOf(moveNanos, plies), Arrays.copyOf(cells, plies));
+    }
+
+    private boolean move(GameManager manager, IBot bot, long[] moveNanos, int ply) {
+        if (carriers == null || bot instanceof IRemoteBot)
+            return timedMove(manager, moveNanos, ply);
+        try {
+            return carriers.submit(() -> timedMove(manager, moveNanos, ply)).get();
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while " + bot.getBotName() + " was moving", ex);
+        }
+        catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ex.getCause();
+            if (ex.getCause() instanceof Error)
+                throw (Error) ex.getCause();
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    // The time is taken where the move is made, so waiting for a carrier does not count
+    private static boolean timedMove(GameManager manager, long[] moveNanos, int ply) {
+        long start = System.nanoTime();
+        boolean valid = manager.updateGame();
+        moveNanos[ply] = System.nanoTime() - start;
+        return valid;
+    }
+}
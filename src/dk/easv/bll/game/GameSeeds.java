@@ -0,0 +1,59 @@
+package dk.easv.bll.game;
+
+import dk.easv.bll.bot.IBot;
+import dk.easv.bll.bot.ISeededBot;
+
+import java.util.SplittableRandom;
+
+/**
+ * Derives the random generators of a run from one master seed.
+ *
+ * Every game gets its own generator from the master seed and its game number
+ * alone, so it does not matter which thread plays it or in what order. The
+ * generators of the bots in the game are split off that one in a fixed order.
+ * Rerunning with the same master seed and game number replays the game exactly,
+ * as long as the bots search by a node budget rather than the clock.
+ */
+public final class GameSeeds {
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private GameSeeds() {
+    }
+
+    /**
+     * A master seed for a new run: the uttt.seed system property if it is set,
+     * otherwise a fresh one.
+     */
+    public static long masterSeed() {
+        Long configured = Long.getLong("uttt.seed");
+        return configured != null ? configured : new SplittableRandom().nextLong();
+    }
+
+    /**
+     * @return the generator for the given game of a run
+     */
+    public static SplittableRandom forGame(long masterSeed, long game) {
+        return new SplittableRandom(mix(masterSeed + (game + 1) * GOLDEN_GAMMA));
+    }
+
+    /**
+     * Gives each bot its own generator split off the game's one, player 0 first.
+     * A generator is split for every bot, seeded or not, so the sequence does not
+     * depend on which bots are playing.
+     */
+    public static void seedBots(SplittableRandom gameRandom, IBot... bots) {
+        for (IBot bot : bots) {
+            SplittableRandom botRandom = gameRandom.split();
+            if (bot instanceof ISeededBot)
+                ((ISeededBot) bot).setRandom(botRandom);
+        }
+    }
+
+    // The SplitMix64 finalizer, so neighbouring game numbers give unrelated seeds
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
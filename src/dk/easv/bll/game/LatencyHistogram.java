@@ -0,0 +1,84 @@
+package dk.easv.bll.game;
+
+/**
+ * Move times in fixed logarithmic buckets, so any number of moves takes the same
+ * small amount of memory. Each power of two of microseconds is split into 8
+ * buckets, which puts percentiles within about 9% of the real value.
+ * Not thread safe: keep one per thread and merge them at the end.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKETS = 8;
+    private static final int BUCKETS = 40 * SUB_BUCKETS; // up to 2^40 microseconds
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long totalNanos;
+    private long maxNanos;
+
+    public void record(long nanos) {
+        counts[bucketOf(nanos / 1000)]++;
+        count++;
+        totalNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+    }
+
+    public void merge(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++)
+            counts[i] += other.counts[i];
+        count += other.count;
+        totalNanos += other.totalNanos;
+        maxNanos = Math.max(maxNanos, other.maxNanos);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMeanMillis() {
+        return count == 0 ? 0 : totalNanos / 1e6 / count;
+    }
+
+    public double getMaxMillis() {
+        return maxNanos / 1e6;
+    }
+
+    /**
+     * @param fraction e.g. 0.99 for the 99th percentile
+     * @return the upper edge of the bucket the percentile falls in
+     */
+    public double getPercentileMillis(double fraction) {
+        if (count == 0)
+            return 0;
+        long rank = (long) Math.ceil(fraction * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= Math.max(1, rank))
+                return Math.min(upperMicros(i) / 1000.0, getMaxMillis());
+        }
+        return getMaxMillis();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%,d moves, mean %.1f ms, p50 %.1f ms, p99 %.1f ms, max %.1f ms",
+                count, getMeanMillis(), getPercentileMillis(0.5), getPercentileMillis(0.99), getMaxMillis());
+    }
+
+    private static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS)
+            return (int) Math.max(0, micros);
+        int power = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) ((micros >>> (power - 3)) & (SUB_BUCKETS - 1));
+        return Math.min(BUCKETS - 1, (power - 2) * SUB_BUCKETS + sub);
+    }
+
+    private static long upperMicros(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket + 1;
+        int power = bucket / SUB_BUCKETS + 2;
+        int sub = bucket % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub + 1)) << (power - 3);
+    }
+}
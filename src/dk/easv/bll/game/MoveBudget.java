@@ -0,0 +1,38 @@
+package dk.easv.bll.game;
+
+/**
+ * The time a bot gets for one move, as absolute System.currentTimeMillis() values.
+ * The soft deadline is when it should stop searching, the hard deadline is when
+ * the move must have been handed in.
+ */
+public class MoveBudget {
+
+    private final long startMillis;
+    private final long softDeadline;
+    private final long hardDeadline;
+
+    public MoveBudget(long startMillis, long softDeadline, long hardDeadline) {
+        this.startMillis = startMillis;
+        this.softDeadline = softDeadline;
+        this.hardDeadline = hardDeadline;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public long getSoftDeadline() {
+        return softDeadline;
+    }
+
+    public long getHardDeadline() {
+        return hardDeadline;
+    }
+
+    /**
+     * @return the time until the soft deadline, counted from the start of the move
+     */
+    public int getSoftMillis() {
+        return (int) (softDeadline - startMillis);
+    }
+}
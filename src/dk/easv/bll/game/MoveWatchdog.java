@@ -0,0 +1,248 @@
+package dk.easv.bll.game;
+
+import dk.easv.bll.bot.CancellationToken;
+import dk.easv.bll.bot.IBot;
+import dk.easv.bll.bot.IRemoteBot;
+import dk.easv.bll.move.IMove;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Holds bots to the hard deadline of their moves, see MoveBudget.
+ *
+ * The bot computes its move on a thread of the watchdog's own while the game's
+ * thread waits, at most until the hard deadline plus a grace margin. A move that
+ * comes in after the deadline but within the grace margin is played and counted
+ * as an overrun. A bot that is still thinking when the grace margin is up is
+ * interrupted, its token is cancelled, and it loses the game by forfeit; without
+ * forfeits it is waited for and only the overrun is counted. Overruns are logged,
+ * the ones within the grace margin at Level.FINE.
+ *
+ * A bot that ignores the interrupt keeps its thread, which is a daemon thread, so
+ * a hung bot costs one thread but never stalls a game. Until that move returns the
+ * bot cannot be asked for another one: each of its moves is forfeited at once.
+ *
+ * Local bots move on a pool of platform threads, remote bots on virtual threads
+ * where the JVM has them, see IRemoteBot. A watchdog is meant to be shared by
+ * all the games of a run and closed when the run is over.
+ */
+public class MoveWatchdog implements AutoCloseable {
+
+    public static final long DEFAULT_GRACE_MILLIS = 100;
+
+    /**
+     * Thrown instead of a move by a bot that forfeits for time.
+     */
+    static class MoveTimeoutException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        MoveTimeoutException(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(MoveWatchdog.class.getName());
+
+    private final long graceMillis;
+    private final boolean forfeit;
+    private final ExecutorService localThreads;
+    private final ExecutorService remoteThreads;
+    private final Set<IBot> busy = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+    private final LongAdder moves = new LongAdder();
+    private final LongAdder overruns = new LongAdder();
+    private final LongAdder forfeits = new LongAdder();
+    private final LongAccumulator maxOverrunMillis = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param graceMillis how long after the hard deadline a move is still accepted
+     * @param forfeit true if a bot that is later than that loses the game
+     */
+    public MoveWatchdog(long graceMillis, boolean forfeit) {
+        if (graceMillis < 0)
+            throw new IllegalArgumentException("The grace margin cannot be negative, got " + graceMillis);
+        this.graceMillis = graceMillis;
+        this.forfeit = forfeit;
+        AtomicInteger count = new AtomicInteger();
+        localThreads = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "uttt-move-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        remoteThreads = VirtualThreads.isAvailable() ? VirtualThreads.perTaskExecutor(1) : localThreads;
+    }
+
+    /**
+     * A watchdog set up from -Duttt.grace.ms (default DEFAULT_GRACE_MILLIS) and
+     * -Duttt.forfeit.timeouts (default true).
+     */
+    public static MoveWatchdog fromSystemProperties() {
+        long grace = Long.getLong("uttt.grace.ms", DEFAULT_GRACE_MILLIS);
+        boolean forfeit = Boolean.parseBoolean(System.getProperty("uttt.forfeit.timeouts", "true"));
+        return new MoveWatchdog(grace, forfeit);
+    }
+
+    public long getGraceMillis() {
+        return graceMillis;
+    }
+
+    public boolean isForfeit() {
+        return forfeit;
+    }
+
+    /**
+     * @return the moves that were watched
+     */
+    public long getMoves() {
+        return moves.sum();
+    }
+
+    /**
+     * @return the moves that were handed in after the hard deadline, or not at all
+     */
+    public long getOverruns() {
+        return overruns.sum();
+    }
+
+    /**
+     * @return the moves that lost the game because they took too long
+     */
+    public long getForfeits() {
+        return forfeits.sum();
+    }
+
+    /**
+     * @return the longest time a move was handed in after its hard deadline; a
+     *         forfeited move counts until it was given up on
+     */
+    public long getMaxOverrunMillis() {
+        return maxOverrunMillis.get();
+    }
+
+    /**
+     * Gets a move from the bot within the budget's hard deadline and the grace margin.
+     * @param token the token the bot was given, cancelled if it runs out of time; may be null
+     * @return the bot's move
+     * @throws MoveTimeoutException if the bot ran out of time and forfeits
+     */
+    IMove awaitMove(IBot bot, Callable<IMove> move, MoveBudget budget, CancellationToken token) {
+        moves.increment();
+        if (!busy.add(bot)) {
+            // Still on a move it was given up on, and bots are not made to move twice at once
+            overruns.increment();
+            forfeits.increment();
+            LOGGER.log(Level.WARNING, "{0} forfeits, it is still busy with an earlier move", bot.getBotName());
+            throw new MoveTimeoutException(bot.getBotName() + " is still busy with an earlier move");
+        }
+        // The task always runs to the end, so the bot is always released; it is interrupted rather than cancelled
+        AtomicReference<Thread> runner = new AtomicReference<>();
+        Future<IMove> future;
+        try {
+            future = (bot instanceof IRemoteBot ? remoteThreads : localThreads).submit(() -> {
+                runner.set(Thread.currentThread());
+                try {
+                    return move.call();
+                }
+                finally {
+                    synchronized (runner) {
+                        runner.set(null);
+                        Thread.interrupted();
+                    }
+                    busy.remove(bot);
+                }
+            });
+        }
+        catch (RuntimeException ex) {
+            busy.remove(bot);
+            throw ex;
+        }
+
+        long limit = budget.getHardDeadline() + graceMillis;
+        try {
+            IMove result;
+            try {
+                result = future.get(Math.max(0, limit - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            }
+            catch (TimeoutException ex) {
+                if (token != null)
+                    token.cancel();
+                if (forfeit) {
+                    interrupt(runner);
+                    long overrun = System.currentTimeMillis() - budget.getHardDeadline();
+                    recordOverrun(bot, overrun, true);
+                    throw new MoveTimeoutException(bot.getBotName() + " made no move " + overrun + " ms after the hard deadline");
+                }
+                result = future.get();
+            }
+            long overrun = System.currentTimeMillis() - budget.getHardDeadline();
+            if (overrun > 0)
+                recordOverrun(bot, overrun, false);
+            return result;
+        }
+        catch (InterruptedException ex) {
+            interrupt(runner);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while " + bot.getBotName() + " was moving", ex);
+        }
+        catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ex.getCause();
+            if (ex.getCause() instanceof Error)
+                throw (Error) ex.getCause();
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    private static void interrupt(AtomicReference<Thread> runner) {
+        synchronized (runner) {
+            Thread thread = runner.get();
+            if (thread != null)
+                thread.interrupt();
+        }
+    }
+
+    private void recordOverrun(IBot bot, long overrunMillis, boolean forfeited) {
+        overruns.increment();
+        maxOverrunMillis.accumulate(overrunMillis);
+        if (forfeited) {
+            forfeits.increment();
+            LOGGER.log(Level.WARNING, "{0} forfeits, no move {1} ms after the hard deadline",
+                    new Object[]{bot.getBotName(), overrunMillis});
+        }
+        else {
+            LOGGER.log(overrunMillis > graceMillis ? Level.WARNING : Level.FINE,
+                    "{0} moved {1} ms after the hard deadline", new Object[]{bot.getBotName(), overrunMillis});
+        }
+    }
+
+    /**
+     * Stops the watchdog's threads once the moves they are computing are done.
+     * Moves can no longer be watched afterwards.
+     */
+    @Override
+    public void close() {
+        localThreads.shutdown();
+        if (remoteThreads != localThreads)
+            remoteThreads.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%,d of %,d moves late, %,d forfeited, at most %,d ms late (grace %d ms)",
+                getOverruns(), getMoves(), getForfeits(), getMaxOverrunMillis(), graceMillis);
+    }
+}
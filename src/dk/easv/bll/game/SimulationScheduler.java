@@ -0,0 +1,274 @@
+package dk.easv.bll.game;
+
+import dk.easv.bll.bot.IBot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Plays a number of games between two bots on a work-stealing pool.
+ *
+ * The unit of work is a pair of games with swapped colours: bot A moves first in
+ * the even games and bot B in the odd ones, so even a run that is stopped early
+ * is fair. The range of pairs is split in halves until single pairs are left, and
+ * a thread that runs out of work steals the biggest half another thread has left,
+ * so all threads stay busy until the last pair. Exactly the requested number of
+ * games is played; with an odd number the last pair is a single game.
+ *
+ * Every thread plays with its own two bot instances. Games are numbered, and each
+ * game's seed depends only on its number, so it does not matter which thread plays it.
+ *
+ * Against a remote bot a game thread mostly waits on the network, so Mode.VIRTUAL
+ * plays every game on a thread of its own instead, a virtual thread where the JVM
+ * has them. Up to maxGamesInFlight games are played at once, and the moves of the
+ * local bots are computed on a pool of parallelism carrier threads, so the CPU is
+ * never asked for more than it has. The bots are then pooled rather than kept per
+ * thread, and the counts in the throughput are per pair of bots.
+ */
+public class SimulationScheduler {
+
+    public enum Mode {
+        /** A work-stealing pool with one game per thread at a time, for local bots */
+        POOLED,
+        /** A thread per game, for bots that wait on the network, see IRemoteBot */
+        VIRTUAL
+    }
+
+    public static final int DEFAULT_MAX_GAMES_IN_FLIGHT = 4096;
+
+    // Games played at once without virtual threads, when each holds a platform thread
+    private static final int FALLBACK_GAME_THREADS = 256;
+
+    /**
+     * Told about every finished game, from the thread that played it.
+     */
+    public interface GameListener {
+        void gameFinished(long game, boolean aFirst, GameOutcome outcome);
+    }
+
+    private final int parallelism;
+    private final Mode mode;
+    private int maxGamesInFlight = DEFAULT_MAX_GAMES_IN_FLIGHT;
+
+    public SimulationScheduler() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public SimulationScheduler(int parallelism) {
+        this(parallelism, Mode.POOLED);
+    }
+
+    public SimulationScheduler(int parallelism, Mode mode) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("At least one thread is needed, got " + parallelism);
+        this.parallelism = parallelism;
+        this.mode = mode;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getMaxGamesInFlight() {
+        return maxGamesInFlight;
+    }
+
+    /**
+     * How many games Mode.VIRTUAL plays at the same time. Without virtual threads
+     * this is capped by the size of the fallback pool.
+     */
+    public void setMaxGamesInFlight(int maxGamesInFlight) {
+        if (maxGamesInFlight < 1)
+            throw new IllegalArgumentException("At least one game at a time is needed, got " + maxGamesInFlight);
+        this.maxGamesInFlight = maxGamesInFlight;
+    }
+
+    /**
+     * @return true if Mode.VIRTUAL gets virtual threads on this JVM
+     */
+    public static boolean hasVirtualThreads() {
+        return VirtualThreads.isAvailable();
+    }
+
+    /**
+     * Plays the games and returns when all of them are done.
+     * @param botA creates bot A, once per thread
+     * @param botB creates bot B, once per thread
+     * @return how long it took and how the games were spread over the threads
+     */
+    public SimulationThroughput run(Supplier<IBot> botA, Supplier<IBot> botB, GameRunner runner,
+                                    long games, long masterSeed, GameListener listener) {
+        if (mode == Mode.VIRTUAL)
+            return runPerGame(botA, botB, runner, games, masterSeed, listener);
+        List<long[]> threadCounts = new ArrayList<>();
+        ThreadLocal<Player> players = ThreadLocal.withInitial(() -> {
+            long[] count = new long[1];
+            synchronized (threadCounts) {
+                threadCounts.add(count);
+            }
+            return new Player(botA.get(), botB.get(), count);
+        });
+
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new Pairs(0, (games + 1) / 2, games, masterSeed, runner, players, listener));
+        }
+        finally {
+            pool.shutdown();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long[] perThread;
+        synchronized (threadCounts) {
+            perThread = new long[threadCounts.size()];
+            for (int i = 0; i < perThread.length; i++)
+                perThread[i] = threadCounts.get(i)[0];
+        }
+        return new SimulationThroughput(games, elapsed, perThread);
+    }
+
+    private SimulationThroughput runPerGame(Supplier<IBot> botA, Supplier<IBot> botB, GameRunner runner,
+                                            long games, long masterSeed, GameListener listener) {
+        int inFlight = VirtualThreads.isAvailable()
+                ? maxGamesInFlight : Math.min(maxGamesInFlight, FALLBACK_GAME_THREADS);
+        Semaphore slots = new Semaphore(inFlight);
+        Queue<Player> idle = new ConcurrentLinkedQueue<>();
+        List<long[]> pairCounts = new ArrayList<>();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        long start = System.nanoTime();
+        ExecutorService carriers = VirtualThreads.fixedPool(parallelism, "uttt-carrier-");
+        ExecutorService gameThreads = VirtualThreads.perTaskExecutor(inFlight);
+        GameRunner carried = runner.withCarriers(carriers);
+        try {
+            for (long game = 0; game < games && failure.get() == null; game++) {
+                slots.acquireUninterruptibly();
+                long number = game;
+                gameThreads.execute(() -> {
+                    Player player = idle.poll();
+                    try {
+                        if (player == null) {
+                            long[] count = new long[1];
+                            synchronized (pairCounts) {
+                                pairCounts.add(count);
+                            }
+                            player = new Player(botA.get(), botB.get(), count);
+                        }
+                        playGame(player, number, masterSeed, carried, listener);
+                    }
+                    catch (Throwable ex) {
+                        failure.compareAndSet(null, ex);
+                    }
+                    finally {
+                        if (player != null)
+                            idle.offer(player);
+                        slots.release();
+                    }
+                });
+            }
+            // Every slot is back once the last game is done
+            slots.acquireUninterruptibly(inFlight);
+        }
+        finally {
+            gameThreads.shutdown();
+            carriers.shutdown();
+        }
+        awaitQuietly(gameThreads);
+        long elapsed = System.nanoTime() - start;
+
+        Throwable thrown = failure.get();
+        if (thrown instanceof RuntimeException)
+            throw (RuntimeException) thrown;
+        if (thrown instanceof Error)
+            throw (Error) thrown;
+
+        long[] perPair;
+        synchronized (pairCounts) {
+            perPair = new long[pairCounts.size()];
+            for (int i = 0; i < perPair.length; i++)
+                perPair[i] = pairCounts.get(i)[0];
+        }
+        return new SimulationThroughput(games, elapsed, perPair);
+    }
+
+    private static void awaitQuietly(ExecutorService executor) {
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void playGame(Player player, long game, long masterSeed, GameRunner runner, GameListener listener) {
+        boolean aFirst = game % 2 == 0;
+        GameOutcome outcome = aFirst
+                ? runner.play(player.a, player.b, masterSeed, game)
+                : runner.play(player.b, player.a, masterSeed, game);
+        player.games[0]++;
+        listener.gameFinished(game, aFirst, outcome);
+    }
+
+    private static final class Player {
+        final IBot a;
+        final IBot b;
+        final long[] games;
+
+        Player(IBot a, IBot b, long[] games) {
+            this.a = a;
+            this.b = b;
+            this.games = games;
+        }
+    }
+
+    // The pairs [from, to), split until a single pair is left
+    private static final class Pairs extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long from;
+        private final long to;
+        private final long games;
+        private final long masterSeed;
+        private final GameRunner runner;
+        private final ThreadLocal<Player> players;
+        private final GameListener listener;
+
+        Pairs(long from, long to, long games, long masterSeed, GameRunner runner,
+              ThreadLocal<Player> players, GameListener listener) {
+            this.from = from;
+            this.to = to;
+            this.games = games;
+            this.masterSeed = masterSeed;
+            this.runner = runner;
+            this.players = players;
+            this.listener = listener;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                long middle = (from + to) >>> 1;
+                invokeAll(new Pairs(from, middle, games, masterSeed, runner, players, listener),
+                        new Pairs(middle, to, games, masterSeed, runner, players, listener));
+                return;
+            }
+            Player player = players.get();
+            for (long game = from * 2; game < Math.min(games, from * 2 + 2); game++)
+                playGame(player, game, masterSeed, runner, listener);
+        }
+    }
+}
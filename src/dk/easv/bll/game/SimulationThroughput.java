@@ -0,0 +1,49 @@
+package dk.easv.bll.game;
+
+/**
+ * How fast a simulation ran, and how evenly its games were spread over the threads.
+ */
+public class SimulationThroughput {
+
+    private final long games;
+    private final long elapsedNanos;
+    private final long[] gamesPerThread;
+
+    public SimulationThroughput(long games, long elapsedNanos, long[] gamesPerThread) {
+        this.games = games;
+        this.elapsedNanos = elapsedNanos;
+        this.gamesPerThread = gamesPerThread;
+    }
+
+    public long getGames() {
+        return games;
+    }
+
+    public double getSeconds() {
+        return elapsedNanos / 1e9;
+    }
+
+    public double getGamesPerSecond() {
+        return elapsedNanos == 0 ? 0 : games * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @return the number of games each thread that took part played
+     */
+    public long[] getGamesPerThread() {
+        return gamesPerThread.clone();
+    }
+
+    @Override
+    public String toString() {
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        for (long count : gamesPerThread) {
+            min = Math.min(min, count);
+            max = Math.max(max, count);
+        }
+        return String.format("%,d games in %.1f s (%.2f games/s) on %d threads, %,d to %,d games each",
+                games, getSeconds(), getGamesPerSecond(), gamesPerThread.length,
+                gamesPerThread.length == 0 ? 0 : min, max);
+    }
+}
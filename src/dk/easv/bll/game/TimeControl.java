@@ -0,0 +1,70 @@
+package dk.easv.bll.game;
+
+/**
+ * The clock a game is played with: either a fixed time per move, or a total time
+ * per player that is increased by an increment after each move.
+ */
+public class TimeControl {
+
+    private final long baseMillis;
+    private final long incrementMillis;
+    private final boolean perMove;
+
+    private TimeControl(long baseMillis, long incrementMillis, boolean perMove) {
+        if (baseMillis <= 0 || incrementMillis < 0)
+            throw new IllegalArgumentException("Invalid time control: " + baseMillis + "ms + " + incrementMillis + "ms");
+        this.baseMillis = baseMillis;
+        this.incrementMillis = incrementMillis;
+        this.perMove = perMove;
+    }
+
+    /**
+     * Every move gets the same time, unused time is lost.
+     */
+    public static TimeControl perMove(long millis) {
+        return new TimeControl(millis, 0, true);
+    }
+
+    /**
+     * Each player has a total of baseMillis for the game, and gets incrementMillis
+     * added after every move they make.
+     */
+    public static TimeControl clock(long baseMillis, long incrementMillis) {
+        return new TimeControl(baseMillis, incrementMillis, false);
+    }
+
+    /**
+     * Parses "100" as 100 ms per move and "60000+500" as a 60 s clock with a 0.5 s increment.
+     */
+    public static TimeControl parse(String text) {
+        int plus = text.indexOf('+');
+        try {
+            if (plus < 0)
+                return perMove(Long.parseLong(text.trim()));
+            return clock(Long.parseLong(text.substring(0, plus).trim()), Long.parseLong(text.substring(plus + 1).trim()));
+        }
+        catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid time control: " + text, ex);
+        }
+    }
+
+    public boolean isPerMove() {
+        return perMove;
+    }
+
+    /**
+     * @return the time per move, or the starting time on each player's clock
+     */
+    public long getBaseMillis() {
+        return baseMillis;
+    }
+
+    public long getIncrementMillis() {
+        return incrementMillis;
+    }
+
+    @Override
+    public String toString() {
+        return perMove ? baseMillis + "ms/move" : baseMillis + "ms+" + incrementMillis + "ms";
+    }
+}
@@ -0,0 +1,120 @@
+package dk.easv.bll.game;
+
+import dk.easv.bll.field.IField;
+
+/**
+ * Turns the game's time control into a budget for each move.
+ *
+ * With a clock the remaining time is spread over the moves that are likely still
+ * to come, and more of it goes to critical positions: the middlegame, a free
+ * choice of board, and open macro threats. With a fixed time per move unused time
+ * is lost anyway, so every move may use all of it: the soft deadline is the time
+ * per move less the safety margin, and the hard deadline the full time per move.
+ *
+ * A safety margin is kept back from every budget. It follows the overhead the
+ * game driver has actually been seeing around the bot's own thinking time
+ * (copying the state, checking and playing the move), see recordOverhead().
+ */
+public class TimeManager {
+
+    private static final long MIN_MARGIN_MILLIS = 5;
+    private static final long MIN_MOVE_MILLIS = 10;
+    private static final int EXPECTED_PLIES = 64;   // typical length of a game
+    private static final int MIN_MOVES_LEFT = 6;
+    private static final double MAX_STRETCH = 3.0;  // hard deadline as a multiple of the soft one
+    private static final double OVERHEAD_DECAY = 0.95;
+
+    private final TimeControl control;
+    private double peakOverheadMillis;
+
+    public TimeManager(TimeControl control) {
+        this.control = control;
+    }
+
+    public TimeControl getTimeControl() {
+        return control;
+    }
+
+    /**
+     * @param state the position the bot is about to move in
+     * @param remainingMillis time left on the mover's clock, ignored with a fixed time per move
+     * @return soft and hard deadlines, counted from now
+     */
+    public MoveBudget allocate(IGameState state, long remainingMillis) {
+        long now = System.currentTimeMillis();
+        long margin = getSafetyMarginMillis();
+
+        if (control.isPerMove()) {
+            long usable = Math.max(1, control.getBaseMillis() - margin);
+            // The margin is for the driver, so a bot stopping at the soft deadline is never late
+            return new MoveBudget(now, now + usable, now + Math.max(usable, control.getBaseMillis()));
+        }
+
+        // The increment only arrives after the move, so it cannot be spent on this one
+        long available = Math.max(1, remainingMillis - margin);
+        int movesLeft = Math.max(MIN_MOVES_LEFT, (EXPECTED_PLIES - state.getMoveNumber()) / 2);
+        double target = (double) remainingMillis / movesLeft + control.getIncrementMillis();
+        long soft = (long) (target * criticality(state));
+        long hard = Math.min(available, (long) (soft * MAX_STRETCH));
+        soft = Math.min(Math.max(soft, Math.min(MIN_MOVE_MILLIS, hard)), hard);
+        return new MoveBudget(now, now + soft, now + hard);
+    }
+
+    /**
+     * Records the time a move took on the driver's side, outside the bot.
+     */
+    public synchronized void recordOverhead(long nanos) {
+        double millis = nanos / 1_000_000.0;
+        peakOverheadMillis = Math.max(millis, peakOverheadMillis * OVERHEAD_DECAY);
+    }
+
+    /**
+     * @return the time kept back from every budget, twice the recent peak overhead
+     */
+    public synchronized long getSafetyMarginMillis() {
+        return MIN_MARGIN_MILLIS + (long) Math.ceil(2 * peakOverheadMillis);
+    }
+
+    /**
+     * How much of a normal share of time a position deserves, between 0.5 and 2.
+     */
+    static double criticality(IGameState state) {
+        // Bell shaped over the game, highest around move 32
+        double phase = (state.getMoveNumber() - 32) / 18.0;
+        double weight = 0.6 + 0.7 * Math.exp(-phase * phase);
+
+        String[][] macro = state.getField().getMacroboard();
+        int available = 0;
+        for (String[] column : macro)
+            for (String cell : column)
+                if (cell.equals(IField.AVAILABLE_FIELD))
+                    available++;
+        if (available > 1)
+            weight += 0.2;  // a free choice of board
+        if (hasMacroThreat(macro))
+            weight += 0.3;
+        return Math.max(0.5, Math.min(2.0, weight));
+    }
+
+    // A macro line where one player has won two boards and the third is still open
+    private static boolean hasMacroThreat(String[][] macro) {
+        int[][] lines = {
+                {0, 1, 2}, {3, 4, 5}, {6, 7, 8},
+                {0, 3, 6}, {1, 4, 7}, {2, 5, 8},
+                {0, 4, 8}, {2, 4, 6}};
+        for (int[] line : lines) {
+            int open = 0;
+            int won0 = 0;
+            int won1 = 0;
+            for (int square : line) {
+                String cell = macro[square / 3][square % 3];
+                if (cell.equals(IField.EMPTY_FIELD) || cell.equals(IField.AVAILABLE_FIELD)) open++;
+                else if (cell.equals("0")) won0++;
+                else if (cell.equals("1")) won1++;
+            }
+            if (open == 1 && (won0 == 2 || won1 == 2))
+                return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,67 @@
+package dk.easv.bll.game;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Virtual threads where the JVM has them (Java 21 and later), looked up by
+ * reflection so the project still builds and runs on Java 17. Without them the
+ * same tasks run on a bounded pool of ordinary threads.
+ */
+final class VirtualThreads {
+
+    private static final ExecutorFactory FACTORY = lookup();
+
+    private VirtualThreads() {
+    }
+
+    private interface ExecutorFactory {
+        ExecutorService create() throws ReflectiveOperationException;
+    }
+
+    private static ExecutorFactory lookup() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return () -> (ExecutorService) method.invoke(null);
+        }
+        catch (NoSuchMethodException ex) {
+            return null;
+        }
+    }
+
+    static boolean isAvailable() {
+        return FACTORY != null;
+    }
+
+    /**
+     * @return an executor that starts a virtual thread for every task, or one with
+     *         fallbackThreads daemon threads if there are no virtual threads
+     */
+    static ExecutorService perTaskExecutor(int fallbackThreads) {
+        if (FACTORY != null) {
+            try {
+                return FACTORY.create();
+            }
+            catch (ReflectiveOperationException ex) {
+                // Fall through to the platform threads
+            }
+        }
+        return fixedPool(fallbackThreads, "uttt-game-");
+    }
+
+    /**
+     * @return a pool of daemon platform threads
+     */
+    static ExecutorService fixedPool(int threads, String namePrefix) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = task -> {
+            Thread thread = new Thread(task, namePrefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(threads, factory);
+    }
+}
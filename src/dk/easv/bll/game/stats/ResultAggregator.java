@@ -0,0 +1,143 @@
+package dk.easv.bll.game.stats;
+
+import dk.easv.bll.game.GameOutcome;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Adds up the results of games played on many threads at once, per pair of bots
+ * and per colour, without locks.
+ *
+ * Every game is recorded with a single increment of the counter for its pair,
+ * colour and result, and the number of games is the sum of those counters rather
+ * than a counter of its own. A snapshot can therefore never count half a game: its
+ * wins and ties always add up to its games, even while games are still being
+ * recorded. Once every thread that records has finished, a snapshot is exact.
+ */
+public class ResultAggregator {
+
+    private final ConcurrentMap<Key, Pair> pairs = new ConcurrentHashMap<>();
+
+    /**
+     * @return the counters for games between the two bots, A being the first one
+     *         named; a pair is created the first time it is asked for
+     */
+    public Pair pair(String botA, String botB) {
+        return pairs.computeIfAbsent(new Key(botA, botB), key -> new Pair(key.botA, key.botB));
+    }
+
+    /**
+     * @return a snapshot of every pair, in no particular order
+     */
+    public List<ResultSnapshot> snapshot() {
+        List<ResultSnapshot> snapshots = new ArrayList<>();
+        for (Pair pair : pairs.values())
+            snapshots.add(pair.snapshot());
+        return snapshots;
+    }
+
+    /**
+     * @return the games recorded so far over all pairs, for progress reports
+     */
+    public long getGames() {
+        long games = 0;
+        for (Pair pair : pairs.values())
+            games += pair.getGames();
+        return games;
+    }
+
+    /**
+     * Clears every pair; only exact while no games are being recorded.
+     */
+    public void reset() {
+        for (Pair pair : pairs.values())
+            pair.reset();
+    }
+
+    /**
+     * The counters of one pair of bots, to be kept by the threads that play their
+     * games so that recording a game does not look the pair up.
+     */
+    public static final class Pair {
+        private final String botA;
+        private final String botB;
+        private final LongAdder[] counts = new LongAdder[ResultSnapshot.COUNTERS];
+
+        private Pair(String botA, String botB) {
+            this.botA = botA;
+            this.botB = botB;
+            for (int i = 0; i < counts.length; i++)
+                counts[i] = new LongAdder();
+        }
+
+        /**
+         * Records a finished game.
+         * @param aFirst true if bot A moved first, and so was player 0 in the outcome
+         */
+        public void record(boolean aFirst, GameOutcome outcome) {
+            record(aFirst, outcome.getWinner(), outcome.isForfeit());
+        }
+
+        public void record(boolean aFirst, GameResult.Winner winner, boolean forfeit) {
+            int result;
+            if (winner == GameResult.Winner.tie) {
+                result = ResultSnapshot.TIE;
+            }
+            else {
+                boolean aWon = (winner == GameResult.Winner.player0) == aFirst;
+                if (forfeit)
+                    result = aWon ? ResultSnapshot.A_WIN_FORFEIT : ResultSnapshot.B_WIN_FORFEIT;
+                else
+                    result = aWon ? ResultSnapshot.A_WIN : ResultSnapshot.B_WIN;
+            }
+            counts[ResultSnapshot.index(aFirst, result)].increment();
+        }
+
+        public long getGames() {
+            long games = 0;
+            for (LongAdder count : counts)
+                games += count.sum();
+            return games;
+        }
+
+        public ResultSnapshot snapshot() {
+            long[] values = new long[counts.length];
+            for (int i = 0; i < values.length; i++)
+                values[i] = counts[i].sum();
+            return new ResultSnapshot(botA, botB, values);
+        }
+
+        void reset() {
+            for (LongAdder count : counts)
+                count.reset();
+        }
+    }
+
+    private static final class Key {
+        private final String botA;
+        private final String botB;
+
+        Key(String botA, String botB) {
+            this.botA = botA;
+            this.botB = botB;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return botA.equals(key.botA) && botB.equals(key.botB);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(botA, botB);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package dk.easv.bll.game.stats;
+
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Hands finished games from the simulation threads to a single consumer, such as
+ * the user interface, which takes them in batches.
+ *
+ * The queue is bounded and a producer never waits for it: a result that does not
+ * fit is only counted, per pair of players and winner, in the overflow. A consumer
+ * that falls behind therefore gets counts instead of every game, but the simulation
+ * runs on at full speed and no game goes uncounted.
+ */
+public class ResultQueue {
+
+    /**
+     * Takes the counts of results that did not fit in the queue.
+     */
+    public interface OverflowConsumer {
+        void accept(String player0, String player1, GameResult.Winner winner, long games);
+    }
+
+    private static final GameResult.Winner[] WINNERS = GameResult.Winner.values();
+
+    private final BlockingQueue<GameResult> queue;
+    private final ConcurrentMap<String, Overflow> overflow = new ConcurrentHashMap<>();
+
+    public ResultQueue(int capacity) {
+        queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Adds a result from any thread, without waiting.
+     * @return false if the queue was full and the result was only counted
+     */
+    public boolean offer(GameResult result) {
+        if (queue.offer(result))
+            return true;
+        overflow.computeIfAbsent(result.getPlayer0() + '\n' + result.getPlayer1(),
+                        key -> new Overflow(result.getPlayer0(), result.getPlayer1()))
+                .counts.incrementAndGet(result.getWinner().ordinal());
+        return false;
+    }
+
+    /**
+     * Moves up to maxResults of the queued results to the given collection.
+     * @return the number of results moved
+     */
+    public int drainTo(Collection<? super GameResult> results, int maxResults) {
+        return queue.drainTo(results, maxResults);
+    }
+
+    /**
+     * Hands the counts of the results that did not fit in the queue to the consumer
+     * and sets them to zero. Every such result is handed over exactly once, even
+     * while results are being offered.
+     * @return the number of results handed over
+     */
+    public long drainOverflow(OverflowConsumer consumer) {
+        long drained = 0;
+        for (Overflow pair : overflow.values()) {
+            for (int w = 0; w < WINNERS.length; w++) {
+                long games = pair.counts.getAndSet(w, 0);
+                if (games > 0) {
+                    consumer.accept(pair.player0, pair.player1, WINNERS[w], games);
+                    drained += games;
+                }
+            }
+        }
+        return drained;
+    }
+
+    /**
+     * Drops the queued results and the overflow counts. Results offered while this
+     * runs may or may not survive it.
+     */
+    public void clear() {
+        queue.clear();
+        for (Overflow pair : overflow.values())
+            for (int w = 0; w < WINNERS.length; w++)
+                pair.counts.set(w, 0);
+    }
+
+    private static final class Overflow {
+        private final String player0;
+        private final String player1;
+        private final AtomicLongArray counts = new AtomicLongArray(WINNERS.length);
+
+        Overflow(String player0, String player1) {
+            this.player0 = player0;
+            this.player1 = player1;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package dk.easv.bll.game.stats;
+
+/**
+ * The results of the games between two bots at one moment, see ResultAggregator.
+ * Bot A is the first of the pair; "first" means moving first, as player 0.
+ */
+public class ResultSnapshot {
+
+    static final int A_WIN = 0;
+    static final int B_WIN = 1;
+    static final int TIE = 2;
+    static final int A_WIN_FORFEIT = 3;
+    static final int B_WIN_FORFEIT = 4;
+    private static final int RESULTS = 5;
+    static final int COUNTERS = 2 * RESULTS;
+
+    private final String botA;
+    private final String botB;
+    private final long[] counts;
+
+    ResultSnapshot(String botA, String botB, long[] counts) {
+        this.botA = botA;
+        this.botB = botB;
+        this.counts = counts;
+    }
+
+    // The counters for games with A moving first come before those with B first
+    static int index(boolean aFirst, int result) {
+        return (aFirst ? 0 : RESULTS) + result;
+    }
+
+    private long count(int result) {
+        return counts[index(true, result)] + counts[index(false, result)];
+    }
+
+    public String getBotA() {
+        return botA;
+    }
+
+    public String getBotB() {
+        return botB;
+    }
+
+    public long getGames() {
+        long games = 0;
+        for (long count : counts)
+            games += count;
+        return games;
+    }
+
+    /**
+     * @return the games in which bot A moved first
+     */
+    public long getGamesAFirst() {
+        long games = 0;
+        for (int result = 0; result < RESULTS; result++)
+            games += counts[index(true, result)];
+        return games;
+    }
+
+    public long getWinsA() {
+        return count(A_WIN) + count(A_WIN_FORFEIT);
+    }
+
+    public long getWinsAFirst() {
+        return counts[index(true, A_WIN)] + counts[index(true, A_WIN_FORFEIT)];
+    }
+
+    public long getWinsB() {
+        return count(B_WIN) + count(B_WIN_FORFEIT);
+    }
+
+    public long getWinsBFirst() {
+        return counts[index(false, B_WIN)] + counts[index(false, B_WIN_FORFEIT)];
+    }
+
+    public long getTies() {
+        return count(TIE);
+    }
+
+    /**
+     * @return the games bot A lost by forfeit, by an illegal move or by running
+     *         out of time under a MoveWatchdog
+     */
+    public long getForfeitsA() {
+        return count(B_WIN_FORFEIT);
+    }
+
+    /**
+     * @return the games bot B lost by forfeit, by an illegal move or by running
+     *         out of time under a MoveWatchdog
+     */
+    public long getForfeitsB() {
+        return count(A_WIN_FORFEIT);
+    }
+
+    /**
+     * @return bot A's share of the points, a tie being worth half a win
+     */
+    public double getScoreA() {
+        long games = getGames();
+        return games == 0 ? 0 : (getWinsA() + getTies() / 2.0) / games;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s vs %s: w/w/t %d/%d/%d", botA, botB, getWinsA(), getWinsB(), getTies());
+    }
+}
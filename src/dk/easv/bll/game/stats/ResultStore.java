@@ -0,0 +1,184 @@
+package dk.easv.bll.game.stats;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Game results in a fixed amount of memory, however many games are played: the
+ * most recent games in a ring buffer, and the counts of all games per pair of
+ * bots and colour.
+ *
+ * Both are stored in columns of primitives rather than as GameResult objects. A
+ * recent game takes 13 bytes, a second-precision time, the index of its pair and
+ * its result, and is only turned back into a GameResult when it is asked for. The
+ * two bots of a pair are the same pair whichever of them moved first; bot A is the
+ * one that moved first in the pair's first game.
+ *
+ * Not thread-safe, it is meant to be filled and read on one thread, e.g. the UI's.
+ */
+public class ResultStore {
+
+    private static final GameResult.Winner[] WINNERS = GameResult.Winner.values();
+    private static final int SWAPPED = 4;   // result flag: bot B of the pair moved first
+
+    private final int capacity;
+    private final long[] seconds;
+    private final int[] pairs;
+    private final byte[] results;
+    private int oldest;
+    private int size;
+
+    private final Map<String, Integer> pairIds = new HashMap<>();
+    private final List<String> botsA = new ArrayList<>();
+    private final List<String> botsB = new ArrayList<>();
+    private long[] counts = new long[4 * ResultSnapshot.COUNTERS];
+    private long games;
+    private long unlisted;
+
+    public ResultStore(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be positive, got " + capacity);
+        this.capacity = capacity;
+        seconds = new long[capacity];
+        pairs = new int[capacity];
+        results = new byte[capacity];
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of recent games kept, at most the capacity
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return every game counted since the last clear, listed or not
+     */
+    public long getGames() {
+        return games;
+    }
+
+    /**
+     * @return the games that were counted without being listed, see addUnlisted
+     */
+    public long getUnlisted() {
+        return unlisted;
+    }
+
+    /**
+     * Counts the game and keeps it as the most recent one, dropping the oldest
+     * game if the buffer is full.
+     */
+    public void add(GameResult result) {
+        int pair = pairId(result.getPlayer0(), result.getPlayer1());
+        boolean swapped = pair < 0;
+        pair = swapped ? ~pair : pair;
+        count(pair, swapped, result.getWinner(), 1);
+
+        int slot = (oldest + size) % capacity;
+        if (size == capacity)
+            oldest = (oldest + 1) % capacity;
+        else
+            size++;
+        seconds[slot] = result.getDate().toEpochSecond(ZoneOffset.UTC);
+        pairs[slot] = pair;
+        results[slot] = (byte) (result.getWinner().ordinal() | (swapped ? SWAPPED : 0));
+    }
+
+    /**
+     * Counts games that are not kept in the list of recent games, such as those a
+     * ResultQueue could not hold.
+     */
+    public void addUnlisted(String player0, String player1, GameResult.Winner winner, long games) {
+        addCounts(player0, player1, winner, games);
+        unlisted += games;
+    }
+
+    /**
+     * Counts games that were played before, e.g. in an earlier run, without
+     * listing them or counting them as unlisted.
+     */
+    public void addCounts(String player0, String player1, GameResult.Winner winner, long games) {
+        int pair = pairId(player0, player1);
+        boolean swapped = pair < 0;
+        count(swapped ? ~pair : pair, swapped, winner, games);
+    }
+
+    /**
+     * @param index 0 for the oldest game kept, size() - 1 for the most recent
+     * @return a new GameResult for the game
+     */
+    public GameResult get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        int slot = (oldest + index) % capacity;
+        int pair = pairs[slot];
+        boolean swapped = (results[slot] & SWAPPED) != 0;
+        GameResult result = new GameResult(
+                swapped ? botsB.get(pair) : botsA.get(pair),
+                swapped ? botsA.get(pair) : botsB.get(pair),
+                WINNERS[results[slot] & ~SWAPPED]);
+        result.setDate(LocalDateTime.ofEpochSecond(seconds[slot], 0, ZoneOffset.UTC));
+        return result;
+    }
+
+    /**
+     * @return the counts of every pair, in the order the pairs first played
+     */
+    public List<ResultSnapshot> pairSnapshots() {
+        List<ResultSnapshot> snapshots = new ArrayList<>(botsA.size());
+        for (int pair = 0; pair < botsA.size(); pair++) {
+            int base = pair * ResultSnapshot.COUNTERS;
+            snapshots.add(new ResultSnapshot(botsA.get(pair), botsB.get(pair),
+                    Arrays.copyOfRange(counts, base, base + ResultSnapshot.COUNTERS)));
+        }
+        return snapshots;
+    }
+
+    public void clear() {
+        oldest = 0;
+        size = 0;
+        pairIds.clear();
+        botsA.clear();
+        botsB.clear();
+        Arrays.fill(counts, 0);
+        games = 0;
+        unlisted = 0;
+    }
+
+    // The pair's index, or its complement if player1 is the pair's bot A
+    private int pairId(String player0, String player1) {
+        Integer id = pairIds.get(player0 + '\n' + player1);
+        if (id != null)
+            return id;
+        id = pairIds.get(player1 + '\n' + player0);
+        if (id != null)
+            return ~id;
+        int pair = botsA.size();
+        pairIds.put(player0 + '\n' + player1, pair);
+        botsA.add(player0);
+        botsB.add(player1);
+        if ((pair + 1) * ResultSnapshot.COUNTERS > counts.length)
+            counts = Arrays.copyOf(counts, counts.length * 2);
+        return pair;
+    }
+
+    private void count(int pair, boolean swapped, GameResult.Winner winner, long games) {
+        int result;
+        if (winner == GameResult.Winner.tie)
+            result = ResultSnapshot.TIE;
+        else
+            result = (winner == GameResult.Winner.player0) != swapped ? ResultSnapshot.A_WIN : ResultSnapshot.B_WIN;
+        counts[pair * ResultSnapshot.COUNTERS + ResultSnapshot.index(!swapped, result)] += games;
+        this.games += games;
+    }
+}
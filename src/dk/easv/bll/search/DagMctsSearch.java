@@ -0,0 +1,322 @@
+package dk.easv.bll.search;
+
+import dk.easv.bll.field.Symmetry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Monte Carlo search over a graph instead of a tree.
+ * Nodes are looked up by position hash in a concurrent map, so positions reached
+ * through different move orders share one set of statistics.
+ *
+ * Backup follows the path that was actually walked. Every node on it gets the
+ * result, and so does the edge that was taken out of it. Selection uses the
+ * child's shared value together with the edge's own visit count, so a child
+ * that is well explored through another parent is still tried from this one.
+ *
+ * Several threads can search the same graph. Each one walks its own copy of the
+ * board and runs its playouts with its own PlayoutSimulator.
+ */
+public class DagMctsSearch {
+
+    private static final double EXPLORATION = Math.sqrt(2);
+
+    private final Map<Long, Node> nodes = new ConcurrentHashMap<>();
+    private final int threads;
+    private SplittableRandom seedSource;
+    private final Supplier<PlayoutSimulator> simulatorFactory;
+    private final PlayoutSimulator[] simulators; // One per thread, created on first use
+    private final SearchStats stats = new SearchStats();
+    private volatile Node searchRoot; // the root of the running or last search
+
+    public DagMctsSearch(int threads) {
+        this(threads, new SplittableRandom());
+    }
+
+    public DagMctsSearch(int threads, SplittableRandom seedSource) {
+        this(threads, seedSource, PlayoutSimulator::new);
+    }
+
+    /**
+     * @param simulatorFactory creates the playout simulator of each thread
+     */
+    public DagMctsSearch(int threads, SplittableRandom seedSource, Supplier<PlayoutSimulator> simulatorFactory) {
+        this.threads = threads;
+        this.seedSource = seedSource;
+        this.simulatorFactory = simulatorFactory;
+        this.simulators = new PlayoutSimulator[Math.max(1, threads)];
+    }
+
+    /**
+     * Searches until the deadline and returns the move whose edge was visited most.
+     */
+    public int search(SearchBoard board, long deadlineMillis) {
+        return search(board, () -> System.currentTimeMillis() >= deadlineMillis);
+    }
+
+    /**
+     * Searches until stop returns true and returns the move whose edge was visited most.
+     * Every thread checks stop once per batch of 64 iterations.
+     */
+    public int search(SearchBoard board, BooleanSupplier stop) {
+        return run(board, stop, null);
+    }
+
+    /**
+     * Runs the given number of playouts in total over all threads, however long
+     * that takes, and returns the move whose edge was visited most.
+     * With a single thread the result only depends on the seed.
+     */
+    public int searchPlayouts(SearchBoard board, long playouts) {
+        return run(board, () -> false, new AtomicLong(playouts));
+    }
+
+    /**
+     * The move whose edge was visited most so far in the running search, or in
+     * the last one. Safe to call from another thread.
+     * @return the cell, or -1 if no search has started
+     */
+    public int getBestMoveSoFar() {
+        Node root = searchRoot;
+        return root == null || root.moves.length == 0 ? -1 : mostVisitedMove(root);
+    }
+
+    private int run(SearchBoard board, BooleanSupplier stop, AtomicLong playoutsLeft) {
+        // Positions with fewer stones than the root can never be reached again
+        int stones = board.getStoneCount();
+        nodes.values().removeIf(node -> node.stones < stones);
+
+        stats.start();
+        Node root = getOrCreate(board);
+        searchRoot = root;
+        List<Worker> workers = new ArrayList<>();
+        if (threads <= 1) {
+            workers.add(new Worker(new SearchBoard(board), seedSource.split(), simulator(0), stop, playoutsLeft));
+            workers.get(0).run();
+        }
+        else {
+            // Set when the caller is interrupted, so the workers stop before the search returns
+            AtomicBoolean aborted = new AtomicBoolean();
+            BooleanSupplier workerStop = () -> aborted.get() || stop.getAsBoolean();
+            List<Thread> running = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                Worker worker = new Worker(new SearchBoard(board), seedSource.split(), simulator(i), workerStop, playoutsLeft);
+                workers.add(worker);
+                Thread t = new Thread(worker);
+                t.setDaemon(true);
+                t.start();
+                running.add(t);
+            }
+            // The workers write to the graph and the simulators, so every one of them is
+            // waited for, even when interrupted, before the next search can start
+            boolean interrupted = false;
+            for (Thread t : running) {
+                while (true) {
+                    try {
+                        t.join();
+                        break;
+                    }
+                    catch (InterruptedException ex) {
+                        interrupted = true;
+                        aborted.set(true);
+                    }
+                }
+            }
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+
+        for (Worker worker : workers) {
+            stats.addNodes(worker.nodeCount);
+            stats.addPlayouts(worker.playoutCount);
+            stats.reachedDepth(worker.maxDepth);
+            stats.addProbes(worker.probes, worker.hits);
+        }
+
+        int best = mostVisitedMove(root);
+        stats.bestMove(best);
+        return best;
+    }
+
+    private static int mostVisitedMove(Node root) {
+        int best = 0;
+        synchronized (root) {
+            for (int i = 1; i < root.moves.length; i++)
+                if (root.edgeVisits[i] > root.edgeVisits[best])
+                    best = i;
+        }
+        return root.moves[best];
+    }
+
+    /**
+     * Replaces the generator the threads' generators are split from, e.g. with a
+     * seeded one at the start of a game.
+     */
+    public void setSeedSource(SplittableRandom seedSource) {
+        this.seedSource = seedSource;
+    }
+
+    /**
+     * The counters of the last search. Lookups of a new child in the graph count as
+     * transposition table probes, and finding it already there as a hit.
+     */
+    public SearchStats getStats() {
+        return stats;
+    }
+
+    public int getNodeCount() {
+        return nodes.size();
+    }
+
+    public void clear() {
+        nodes.clear();
+        searchRoot = null;
+    }
+
+    private PlayoutSimulator simulator(int thread) {
+        if (simulators[thread] == null)
+            simulators[thread] = simulatorFactory.get();
+        return simulators[thread];
+    }
+
+    private Node getOrCreate(SearchBoard board) {
+        return nodes.computeIfAbsent(board.getHash(), key -> new Node(board));
+    }
+
+    private static final class Node {
+        final int[] moves;
+        final int[] edgeVisits;
+        final Node[] children;
+        final int mover;    // the player who moved into this position
+        final int stones;
+        int visits;
+        double wins;
+
+        Node(SearchBoard board) {
+            int[] buffer = new int[81];
+            // Moves that are mirror images of each other lead to the same subgraph,
+            // so only one of each is kept. Mostly matters for the root in the opening.
+            int count = Symmetry.representatives(board.getSymmetries(), buffer, board.getMoves(buffer));
+            moves = Arrays.copyOf(buffer, count);
+            edgeVisits = new int[count];
+            children = new Node[count];
+            mover = 1 - board.getCurrentPlayer();
+            stones = board.getStoneCount();
+        }
+    }
+
+    private class Worker implements Runnable {
+        private final SearchBoard board;
+        private final SplittableRandom random;
+        private final PlayoutSimulator simulator;
+        private final BooleanSupplier stop;
+        private final AtomicLong playoutsLeft; // shared by all workers, null for a timed search
+        private final Node[] pathNodes = new Node[82];
+        private final int[] pathEdges = new int[82];
+        // Counted per worker and added to the search's stats once the threads are done
+        long nodeCount;
+        long playoutCount;
+        int maxDepth;
+        long probes;
+        long hits;
+
+        Worker(SearchBoard board, SplittableRandom random, PlayoutSimulator simulator, BooleanSupplier stop, AtomicLong playoutsLeft) {
+            this.board = board;
+            this.random = random;
+            this.simulator = simulator;
+            this.stop = stop;
+            this.playoutsLeft = playoutsLeft;
+            simulator.prepare(board);
+        }
+
+        @Override
+        public void run() {
+            if (playoutsLeft != null) {
+                while (!stop.getAsBoolean() && playoutsLeft.getAndDecrement() > 0)
+                    iterate();
+                return;
+            }
+            do {
+                for (int i = 0; i < 64; i++)
+                    iterate();
+            } while (!stop.getAsBoolean());
+        }
+
+        private void iterate() {
+            int startPly = board.getPly();
+            Node node = getOrCreate(board);
+            int depth = 0;
+
+            while (!board.isGameOver() && node.visits > 0) {
+                int edge = selectEdge(node);
+                pathNodes[depth] = node;
+                pathEdges[depth++] = edge;
+                board.makeMove(node.moves[edge]);
+                Node child = node.children[edge];
+                if (child == null) {
+                    child = nodes.get(board.getHash());
+                    probes++;
+                    if (child != null)
+                        hits++;
+                    else
+                        child = getOrCreate(board);
+                    node.children[edge] = child;
+                }
+                node = child;
+            }
+            pathNodes[depth] = node;
+            pathEdges[depth] = -1;
+
+            float result = simulator.playout(board, random);
+            while (board.getPly() > startPly)
+                board.unmakeMove();
+            nodeCount += depth + 1;
+            playoutCount++;
+            if (depth > maxDepth)
+                maxDepth = depth;
+
+            for (int i = depth; i >= 0; i--) {
+                Node n = pathNodes[i];
+                synchronized (n) {
+                    n.visits++;
+                    n.wins += n.mover == 0 ? result : 1 - result;
+                    if (pathEdges[i] >= 0)
+                        n.edgeVisits[pathEdges[i]]++;
+                }
+            }
+        }
+
+        private int selectEdge(Node node) {
+            synchronized (node) {
+                double logVisits = Math.log(node.visits + 1);
+                int best = 0;
+                double bestValue = Double.NEGATIVE_INFINITY;
+                for (int i = 0; i < node.moves.length; i++) {
+                    int edgeVisits = node.edgeVisits[i];
+                    double value;
+                    if (edgeVisits == 0)
+                        value = 1e9 + random.nextDouble(); // untried edges first, in random order
+                    else {
+                        Node child = node.children[i];
+                        double q = child.wins / Math.max(1, child.visits);
+                        value = q + EXPLORATION * Math.sqrt(logVisits / edgeVisits);
+                    }
+                    if (value > bestValue) {
+                        bestValue = value;
+                        best = i;
+                    }
+                }
+                return best;
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package dk.easv.bll.search;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reads a corpus of self-play games as written by TexelTuner: for every game the
+ * number of plies, the cells played and the winner, one byte each.
+ */
+public final class GameCorpus {
+
+    /**
+     * Receives the positions of the corpus one at a time. The board is reused and
+     * must not be kept.
+     */
+    public interface PositionVisitor {
+        void visit(SearchBoard board, float result);
+    }
+
+    private GameCorpus() {
+    }
+
+    /**
+     * Replays every game and hands each position after the first skippedPlies to the
+     * visitor, together with the game's result for player 0. Finished positions are left out.
+     */
+    public static void forEachPosition(Path corpus, int skippedPlies, PositionVisitor visitor) throws IOException {
+        int[] cells = new int[81];
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(corpus), 1 << 16))) {
+            while (true) {
+                int plies;
+                try {
+                    plies = in.readUnsignedByte();
+                }
+                catch (EOFException ex) {
+                    return;
+                }
+                for (int i = 0; i < plies; i++)
+                    cells[i] = in.readUnsignedByte();
+                float result = PlayoutSimulator.resultOf(in.readByte());
+
+                SearchBoard board = new SearchBoard();
+                for (int ply = 0; ply < plies; ply++) {
+                    board.makeMove(cells[ply]);
+                    if (ply + 1 >= skippedPlies && !board.isGameOver())
+                        visitor.visit(board, result);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package dk.easv.bll.search;
+
+/**
+ * NodeArena backed by parallel primitive arrays on the Java heap.
+ */
+public class HeapNodeArena extends NodeArena {
+
+    // firstChild + nextSibling + visits + wins + move
+    public static final int BYTES_PER_NODE = 4 + 4 + 4 + 4 + 1;
+
+    private final int[] firstChild;
+    private final int[] nextSibling;
+    private final int[] visits;
+    private final float[] wins;
+    private final byte[] move;
+
+    public HeapNodeArena(int capacity) {
+        super(capacity);
+        firstChild = new int[capacity];
+        nextSibling = new int[capacity];
+        visits = new int[capacity];
+        wins = new float[capacity];
+        move = new byte[capacity];
+    }
+
+    @Override
+    protected void init(int node, int cell) {
+        firstChild[node] = NONE;
+        nextSibling[node] = NONE;
+        visits[node] = 0;
+        wins[node] = 0;
+        move[node] = (byte) cell;
+    }
+
+    @Override
+    public int getFirstChild(int node) {
+        return firstChild[node];
+    }
+
+    @Override
+    public void setFirstChild(int node, int child) {
+        firstChild[node] = child;
+    }
+
+    @Override
+    public int getNextSibling(int node) {
+        return nextSibling[node];
+    }
+
+    @Override
+    public void setNextSibling(int node, int sibling) {
+        nextSibling[node] = sibling;
+    }
+
+    @Override
+    public int getVisits(int node) {
+        return visits[node];
+    }
+
+    @Override
+    public float getWins(int node) {
+        return wins[node];
+    }
+
+    @Override
+    public void update(int node, float result) {
+        visits[node]++;
+        wins[node] += result;
+    }
+
+    @Override
+    public int getMove(int node) {
+        return move[node];
+    }
+}
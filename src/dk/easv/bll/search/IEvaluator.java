@@ -0,0 +1,40 @@
+package dk.easv.bll.search;
+
+/**
+ * A heuristic evaluation that is kept up to date while a SearchBoard is searched.
+ * The board calls onMake/onUnmake on every move, so evaluate() can be answered
+ * without looking at the whole board again.
+ */
+public interface IEvaluator {
+
+    /**
+     * Recomputes everything from scratch for the given board.
+     */
+    void reset(SearchBoard board);
+
+    /**
+     * Called after a move has been made on the board.
+     * @param cell The cell that was played
+     * @param closed True if the move won or filled its micro-board
+     */
+    void onMake(SearchBoard board, int cell, boolean closed);
+
+    /**
+     * Called after a move has been taken back on the board.
+     */
+    void onUnmake(SearchBoard board, int cell, boolean closed);
+
+    /**
+     * @return the score of the current position seen from player 0
+     */
+    int evaluate();
+
+    /**
+     * The evaluator the bots use unless told otherwise: the network evaluator if a
+     * network file is present (see NnueNetwork.startupNetwork), else the table evaluator.
+     */
+    static IEvaluator createDefault() {
+        NnueNetwork network = NnueNetwork.startupNetwork();
+        return network != null ? new NnueEvaluator(network) : new TableEvaluator();
+    }
+}
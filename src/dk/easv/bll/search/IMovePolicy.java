@@ -0,0 +1,18 @@
+package dk.easv.bll.search;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Picks the moves of a playout. Plug one into PlayoutSimulator to change how
+ * simulated games are played.
+ */
+public interface IMovePolicy {
+
+    /**
+     * @param board The position to move in, must not be changed
+     * @param moves The legal moves, as written by SearchBoard.getMoves
+     * @param count Number of legal moves
+     * @return the chosen cell
+     */
+    int selectMove(SearchBoard board, int[] moves, int count, RandomGenerator random);
+}
@@ -0,0 +1,326 @@
+package dk.easv.bll.search;
+
+import dk.easv.bll.field.Symmetry;
+
+import java.util.SplittableRandom;
+import java.util.function.BooleanSupplier;
+import java.util.random.RandomGenerator;
+
+/**
+ * UCT Monte Carlo tree search on a SearchBoard, with the tree kept in a NodeArena.
+ *
+ * Children are not all created when a node is first visited. They are added one
+ * at a time, best prior first, as the node's visit count grows (progressive
+ * widening). Wide early-game nodes stay small, and playouts go to plausible moves.
+ *
+ * The arena has a hard capacity. When it runs low, subtrees under rarely visited
+ * nodes are dropped (the nodes themselves keep their statistics) and the freed
+ * slots are reused, so a long think never grows the heap.
+ * The tree can be kept between moves with advance().
+ * Playouts are run by a PlayoutSimulator, full games unless another one is set.
+ */
+public class MctsSearch {
+
+    private static final double EXPLORATION = Math.sqrt(2);
+    private static final double WIDENING = 1.0;
+
+    private final NodeArena arena;
+    private RandomGenerator random;
+    private final int[] path = new int[82];
+    private final int[] moves = new int[81];
+    private final TableEvaluator evaluator = new TableEvaluator(); // Move priors for widening
+    private PlayoutSimulator simulator = new PlayoutSimulator();
+    private final SearchStats stats = new SearchStats();
+
+    private int root = NodeArena.NONE;
+    private int rootSymmetries = Symmetry.IDENTITY; // mirror images of a root move are not searched
+    private int iterations;
+    private volatile int bestSoFar = -1;
+
+    public MctsSearch(NodeArena arena) {
+        this(arena, new SplittableRandom());
+    }
+
+    public MctsSearch(NodeArena arena, RandomGenerator random) {
+        this.arena = arena;
+        this.random = random;
+    }
+
+    /**
+     * Searches until the deadline and returns the most visited move.
+     * The board is returned in the same state as it was given.
+     */
+    public int search(SearchBoard board, long deadlineMillis) {
+        return search(board, () -> System.currentTimeMillis() >= deadlineMillis);
+    }
+
+    /**
+     * Searches until stop returns true and returns the most visited move.
+     * stop is checked once per batch of 64 iterations.
+     * The board is returned in the same state as it was given.
+     */
+    public int search(SearchBoard board, BooleanSupplier stop) {
+        start(board);
+        do {
+            for (int i = 0; i < 64; i++)
+                iterate(board);
+            bestSoFar = mostVisitedMove();
+            stats.bestMove(bestSoFar);
+        } while (!stop.getAsBoolean());
+
+        return getBestMove(board);
+    }
+
+    /**
+     * Runs exactly the given number of playouts, however long that takes, and
+     * returns the most visited move. The board is returned in the same state as it was given.
+     */
+    public int searchPlayouts(SearchBoard board, long playouts) {
+        start(board);
+        for (long done = 0; done < playouts; done++) {
+            iterate(board);
+            if ((done & 63) == 63) {
+                bestSoFar = mostVisitedMove();
+                stats.bestMove(bestSoFar);
+            }
+        }
+        bestSoFar = mostVisitedMove();
+        stats.bestMove(bestSoFar);
+        return getBestMove(board);
+    }
+
+    private void start(SearchBoard board) {
+        if (root == NodeArena.NONE)
+            root = arena.allocate(0);
+        rootSymmetries = board.getSymmetries();
+        iterations = 0;
+        bestSoFar = -1;
+        stats.start();
+        simulator.prepare(board);
+    }
+
+    /**
+     * The most visited move of the running search, updated after every batch of
+     * iterations. Safe to call from another thread.
+     * @return the cell, or -1 if the search has not got that far
+     */
+    public int getBestMoveSoFar() {
+        return bestSoFar;
+    }
+
+    /**
+     * Moves the root down to the child for the given move and frees everything else.
+     * Call it for every move played, by either side, to keep the tree between moves.
+     */
+    public void advance(int cell) {
+        if (root == NodeArena.NONE)
+            return;
+        int newRoot = NodeArena.NONE;
+        int child = arena.getFirstChild(root);
+        while (child != NodeArena.NONE) {
+            int next = arena.getNextSibling(child);
+            if (arena.getMove(child) == cell)
+                newRoot = child;
+            else
+                arena.freeSubtree(child);
+            child = next;
+        }
+        arena.setFirstChild(root, NodeArena.NONE);
+        arena.freeSubtree(root);
+        if (newRoot != NodeArena.NONE)
+            arena.setNextSibling(newRoot, NodeArena.NONE);
+        root = newRoot;
+    }
+
+    /**
+     * Throws the whole tree away.
+     */
+    public void reset() {
+        arena.clear();
+        root = NodeArena.NONE;
+    }
+
+    /**
+     * Replaces the source of randomness, e.g. with a seeded one at the start of a game.
+     */
+    public void setRandom(RandomGenerator random) {
+        this.random = random;
+    }
+
+    public void setSimulator(PlayoutSimulator simulator) {
+        this.simulator = simulator;
+    }
+
+    public PlayoutSimulator getSimulator() {
+        return simulator;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * The counters of the current or last search, started anew by every search call.
+     */
+    public SearchStats getStats() {
+        return stats;
+    }
+
+    public NodeArena getArena() {
+        return arena;
+    }
+
+    private void iterate(SearchBoard board) {
+        // A walk down the tree adds at most one node
+        if (arena.getAvailable() < 1)
+            prune();
+
+        int startPly = board.getPly();
+        int rootPlayer = board.getCurrentPlayer();
+        int node = root;
+        int depth = 0;
+        path[depth++] = node;
+
+        while (!board.isGameOver()) {
+            int children = countChildren(node);
+            if (children < allowedChildren(arena.getVisits(node))) {
+                int child = widen(node, board);
+                if (child != NodeArena.NONE) {
+                    board.makeMove(arena.getMove(child));
+                    path[depth++] = child;
+                    break;
+                }
+            }
+            if (children == 0)
+                break;
+            node = selectChild(node);
+            board.makeMove(arena.getMove(node));
+            path[depth++] = node;
+        }
+
+        float result = simulator.playout(board, random);
+
+        // A node is scored for the player who made the move leading to it
+        for (int i = depth - 1; i >= 0; i--) {
+            int mover = i % 2 == 1 ? rootPlayer : 1 - rootPlayer;
+            arena.update(path[i], mover == 0 ? result : 1f - result);
+        }
+
+        while (board.getPly() > startPly)
+            board.unmakeMove();
+        iterations++;
+        stats.addNodes(depth);
+        stats.addPlayouts(1);
+        stats.reachedDepth(depth - 1);
+    }
+
+    private int selectChild(int node) {
+        double logParent = Math.log(arena.getVisits(node) + 1);
+        int best = NodeArena.NONE;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int child = arena.getFirstChild(node); child != NodeArena.NONE; child = arena.getNextSibling(child)) {
+            int visits = arena.getVisits(child);
+            double value = visits == 0
+                    ? Double.MAX_VALUE - random.nextDouble()
+                    : arena.getWins(child) / visits + EXPLORATION * Math.sqrt(logParent / visits);
+            if (value > bestValue) {
+                bestValue = value;
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    private int countChildren(int node) {
+        int count = 0;
+        for (int child = arena.getFirstChild(node); child != NodeArena.NONE; child = arena.getNextSibling(child))
+            count++;
+        return count;
+    }
+
+    // Progressive widening: a node may have 1 + sqrt(visits) children, and none before its first visit
+    private static int allowedChildren(int visits) {
+        return visits == 0 ? 0 : 1 + (int) (WIDENING * Math.sqrt(visits));
+    }
+
+    /**
+     * Adds the best move by prior that is not a child yet.
+     * @return the new child, or NONE if every move is already a child or the arena is full
+     */
+    private int widen(int node, SearchBoard board) {
+        long taken0 = 0;
+        long taken1 = 0;
+        for (int child = arena.getFirstChild(node); child != NodeArena.NONE; child = arena.getNextSibling(child)) {
+            int cell = arena.getMove(child);
+            if (cell < 64) taken0 |= 1L << cell;
+            else taken1 |= 1L << (cell - 64);
+        }
+
+        int count = board.getMoves(moves);
+        if (node == root)
+            count = Symmetry.representatives(rootSymmetries, moves, count);
+        int best = -1;
+        int bestPrior = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            int cell = moves[i];
+            boolean taken = cell < 64 ? (taken0 & (1L << cell)) != 0 : (taken1 & (1L << (cell - 64))) != 0;
+            if (taken)
+                continue;
+            int prior = evaluator.scoreMove(board, cell);
+            if (prior > bestPrior) {
+                bestPrior = prior;
+                best = cell;
+            }
+        }
+        if (best < 0)
+            return NodeArena.NONE;
+
+        int child = arena.allocate(best);
+        if (child == NodeArena.NONE)
+            return NodeArena.NONE;
+        arena.setNextSibling(child, arena.getFirstChild(node));
+        arena.setFirstChild(node, child);
+        return child;
+    }
+
+    /**
+     * Collapses the least visited inner nodes until a quarter of the arena is free.
+     * A collapsed node widens again from its best prior once it is visited.
+     * The visit threshold doubles on every pass, so well explored lines go last.
+     */
+    private void prune() {
+        int target = arena.getCapacity() / 4;
+        for (int threshold = 2; arena.getAvailable() < target && threshold > 0; threshold <<= 1) {
+            collapseBelow(root, threshold);
+            if (threshold > arena.getVisits(root))
+                break;
+        }
+    }
+
+    private void collapseBelow(int node, int threshold) {
+        for (int child = arena.getFirstChild(node); child != NodeArena.NONE; child = arena.getNextSibling(child)) {
+            if (arena.getFirstChild(child) == NodeArena.NONE)
+                continue;
+            if (arena.getVisits(child) < threshold)
+                arena.collapse(child);
+            else
+                collapseBelow(child, threshold);
+        }
+    }
+
+    private int mostVisitedMove() {
+        int best = NodeArena.NONE;
+        for (int child = arena.getFirstChild(root); child != NodeArena.NONE; child = arena.getNextSibling(child))
+            if (best == NodeArena.NONE || arena.getVisits(child) > arena.getVisits(best))
+                best = child;
+        return best == NodeArena.NONE ? -1 : arena.getMove(best);
+    }
+
+    private int getBestMove(SearchBoard board) {
+        int best = mostVisitedMove();
+        if (best >= 0)
+            return best;
+        int count = board.getMoves(moves);
+        return moves[random.nextInt(count)];
+    }
+}
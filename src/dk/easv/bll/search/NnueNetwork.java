@@ -0,0 +1,210 @@
+package dk.easv.bll.search;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The weights of a small quantized network for NnueEvaluator, shared read-only
+ * between any number of evaluators.
+ *
+ * Inputs are sparse and binary: a mark of either player on each of the 81 cells,
+ * the status (won by 0, won by 1, tied) of each micro-board, and player 1 to move.
+ * The first layer is summed into an int accumulator that is updated on every move.
+ * The rest is integer-only:
+ *
+ *   accumulator (hidden) -> clamp 0..QA -> int8 dense (hidden2) -> clamp 0..QA -> int8 dense -> score
+ *
+ * A float network is quantized with first layer weights * QA (int16), inner weights
+ * * QB (int8) and biases in the units of the layer they are added to. The output is a
+ * logit for player 0 winning, times outputScale.
+ *
+ * File layout, little endian: magic, version, features, hidden, hidden2, outputScale (ints),
+ * then w1 (int16, per feature), b1 (int16), w2 (int8, per output neuron), b2 (int32),
+ * w3 (int8), b3 (int32).
+ */
+public final class NnueNetwork {
+
+    public static final int FEATURES = 2 * 81 + 3 * 9 + 1;
+    public static final int MAX_ACTIVE = 81 + 9 + 1;
+    public static final int QA = 127;
+    public static final int QB = 64;
+    public static final String DEFAULT_FILE = "evaluator.nnue";
+
+    static final int SIDE_FEATURE = FEATURES - 1;
+
+    private static final int MAGIC = 0x4E4E5455; // "UTNN"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 6 * 4;
+
+    private static volatile NnueNetwork startupNetwork;
+    private static volatile boolean startupLoaded;
+
+    final int hidden;
+    final int hidden2;
+    final int outputScale;
+    final short[] w1;   // [feature][hidden], one contiguous row per feature
+    final short[] b1;
+    final byte[] w2;    // [hidden2][hidden]
+    final int[] b2;
+    final byte[] w3;
+    final int b3;
+
+    public NnueNetwork(int hidden, int hidden2, int outputScale,
+                       short[] w1, short[] b1, byte[] w2, int[] b2, byte[] w3, int b3) {
+        if (w1.length != FEATURES * hidden || b1.length != hidden || w2.length != hidden * hidden2
+                || b2.length != hidden2 || w3.length != hidden2)
+            throw new IllegalArgumentException("Layer sizes do not match " + hidden + "x" + hidden2);
+        this.hidden = hidden;
+        this.hidden2 = hidden2;
+        this.outputScale = outputScale;
+        this.w1 = w1;
+        this.b1 = b1;
+        this.w2 = w2;
+        this.b2 = b2;
+        this.w3 = w3;
+        this.b3 = b3;
+    }
+
+    public int getHidden() {
+        return hidden;
+    }
+
+    static int cellFeature(int player, int cell) {
+        return player * 81 + cell;
+    }
+
+    static int boardFeature(int status, int b) {
+        return 2 * 81 + (status - 1) * 9 + b;
+    }
+
+    /**
+     * Writes the indexes of the inputs that are on in the position.
+     * @return the number written, at most MAX_ACTIVE
+     */
+    public static int activeFeatures(SearchBoard board, int[] features) {
+        int count = 0;
+        for (int b = 0; b < 9; b++) {
+            for (int player = 0; player < 2; player++) {
+                int mask = board.getMask(player, b);
+                while (mask != 0) {
+                    int local = Integer.numberOfTrailingZeros(mask);
+                    mask &= mask - 1;
+                    features[count++] = cellFeature(player, SearchBoard.CELL_AT[b][local]);
+                }
+            }
+            int status = board.getStatus(b);
+            if (status != SearchBoard.OPEN)
+                features[count++] = boardFeature(status, b);
+        }
+        if (board.getCurrentPlayer() == 1)
+            features[count++] = SIDE_FEATURE;
+        return count;
+    }
+
+    /**
+     * Runs the layers after the accumulator.
+     * @param clamped scratch space of at least hidden ints
+     * @return the score for player 0
+     */
+    int forward(int[] accumulator, int offset, int[] clamped) {
+        for (int i = 0; i < hidden; i++) {
+            int value = accumulator[offset + i];
+            clamped[i] = value < 0 ? 0 : (value > QA ? QA : value);
+        }
+        int output = b3;
+        for (int j = 0; j < hidden2; j++) {
+            int sum = b2[j];
+            int row = j * hidden;
+            for (int i = 0; i < hidden; i++)
+                sum += clamped[i] * w2[row + i];
+            sum /= QB;
+            output += (sum < 0 ? 0 : (sum > QA ? QA : sum)) * w3[j];
+        }
+        return (int) ((long) output * outputScale / (QA * QB));
+    }
+
+    public static NnueNetwork read(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC)
+            throw new IOException(file + " is not a network file");
+        int version = buffer.getInt();
+        if (version != VERSION)
+            throw new IOException(file + " has version " + version + ", expected " + VERSION);
+        int features = buffer.getInt();
+        if (features != FEATURES)
+            throw new IOException(file + " has " + features + " inputs, expected " + FEATURES);
+        int hidden = buffer.getInt();
+        int hidden2 = buffer.getInt();
+        int outputScale = buffer.getInt();
+        if (hidden <= 0 || hidden2 <= 0 || buffer.remaining() != bodyBytes(hidden, hidden2))
+            throw new IOException(file + " has the wrong size for " + hidden + "x" + hidden2);
+
+        short[] w1 = new short[FEATURES * hidden];
+        buffer.asShortBuffer().get(w1);
+        buffer.position(buffer.position() + w1.length * 2);
+        short[] b1 = new short[hidden];
+        buffer.asShortBuffer().get(b1);
+        buffer.position(buffer.position() + b1.length * 2);
+        byte[] w2 = new byte[hidden * hidden2];
+        buffer.get(w2);
+        int[] b2 = new int[hidden2];
+        buffer.asIntBuffer().get(b2);
+        buffer.position(buffer.position() + b2.length * 4);
+        byte[] w3 = new byte[hidden2];
+        buffer.get(w3);
+        int b3 = buffer.getInt();
+        return new NnueNetwork(hidden, hidden2, outputScale, w1, b1, w2, b2, w3, b3);
+    }
+
+    public void write(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + bodyBytes(hidden, hidden2)).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(FEATURES).putInt(hidden).putInt(hidden2).putInt(outputScale);
+        for (short w : w1) buffer.putShort(w);
+        for (short b : b1) buffer.putShort(b);
+        buffer.put(w2);
+        for (int b : b2) buffer.putInt(b);
+        buffer.put(w3);
+        buffer.putInt(b3);
+        Files.write(file, buffer.array());
+    }
+
+    private static int bodyBytes(int hidden, int hidden2) {
+        return FEATURES * hidden * 2 + hidden * 2 + hidden * hidden2 + hidden2 * 4 + hidden2 + 4;
+    }
+
+    /**
+     * The network named by the uttt.nnue system property, or evaluator.nnue in the
+     * working directory, read once.
+     * @return the network, or null if there is none or it cannot be read
+     */
+    public static NnueNetwork startupNetwork() {
+        if (!startupLoaded) {
+            synchronized (NnueNetwork.class) {
+                if (!startupLoaded) {
+                    startupNetwork = loadStartupNetwork();
+                    startupLoaded = true;
+                }
+            }
+        }
+        return startupNetwork;
+    }
+
+    private static NnueNetwork loadStartupNetwork() {
+        Path file = Paths.get(System.getProperty("uttt.nnue", DEFAULT_FILE));
+        if (!Files.isRegularFile(file))
+            return null;
+        try {
+            return read(file);
+        }
+        catch (IOException ex) {
+            Logger.getLogger(NnueNetwork.class.getName()).log(Level.WARNING, "Not using the network evaluator", ex);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package dk.easv.bll.search;
+
+import dk.easv.bll.game.GameSeeds;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+
+/**
+ * Headless training of the network for NnueEvaluator on a corpus of self-play games
+ * (see TexelTuner generate):
+ *
+ *   NnueTrainer corpus.bin evaluator.nnue [epochs] [hidden] [hidden2]
+ *
+ * A float copy of the network is trained with Adam so that sigmoid(output) predicts
+ * the result of the game. The corpus is streamed once per epoch through a shuffle
+ * buffer, so it never has to fit in memory. Inner weights are kept inside what int8
+ * can hold after quantization, and the result is written as a network file, which
+ * the bots then load at startup.
+ */
+public class NnueTrainer {
+
+    private static final int SHUFFLE_BUFFER = 1 << 16;
+    private static final int BATCH = 256;
+    private static final double LEARNING_RATE = 1e-3;
+    private static final double BETA1 = 0.9;
+    private static final double BETA2 = 0.999;
+    private static final double EPSILON = 1e-8;
+    private static final float MAX_INNER_WEIGHT = 127f / NnueNetwork.QB;
+    private static final float MAX_FIRST_WEIGHT = (float) Short.MAX_VALUE / NnueNetwork.QA;
+    private static final int OUTPUT_SCALE = 100;   // the scale PlayoutSimulator expects
+
+    private final int hidden;
+    private final int hidden2;
+    private final SplittableRandom random;
+
+    // Parameters, their gradients for the batch and the Adam moments, all in one array
+    private final float[] params;
+    private final float[] grads;
+    private final float[] m;
+    private final float[] v;
+    private final int w1;
+    private final int b1;
+    private final int w2;
+    private final int b2;
+    private final int w3;
+    private final int b3;
+    private long steps;
+
+    private final float[] a;
+    private final float[] h1;
+    private final float[] z2;
+    private final float[] h2;
+    private final float[] dz2;
+
+    // Shuffle buffer: up to MAX_ACTIVE feature indexes per slot
+    private final short[] bufferFeatures = new short[SHUFFLE_BUFFER * NnueNetwork.MAX_ACTIVE];
+    private final byte[] bufferCounts = new byte[SHUFFLE_BUFFER];
+    private final float[] bufferResults = new float[SHUFFLE_BUFFER];
+    private int buffered;
+    private final int[] active = new int[NnueNetwork.MAX_ACTIVE];
+    private int inBatch;
+    private double epochLoss;
+    private long epochPositions;
+
+    NnueTrainer(int hidden, int hidden2, SplittableRandom random) {
+        this.hidden = hidden;
+        this.hidden2 = hidden2;
+        this.random = random;
+        w1 = 0;
+        b1 = w1 + NnueNetwork.FEATURES * hidden;
+        w2 = b1 + hidden;
+        b2 = w2 + hidden * hidden2;
+        w3 = b2 + hidden2;
+        b3 = w3 + hidden2;
+        params = new float[b3 + 1];
+        grads = new float[params.length];
+        m = new float[params.length];
+        v = new float[params.length];
+        a = new float[hidden];
+        h1 = new float[hidden];
+        z2 = new float[hidden2];
+        h2 = new float[hidden2];
+        dz2 = new float[hidden2];
+
+        for (int i = w1; i < b1; i++)
+            params[i] = (float) (random.nextGaussian() * 0.05);
+        for (int i = b1; i < w2; i++)
+            params[i] = 0.25f;
+        double spread2 = Math.sqrt(1.0 / hidden);
+        for (int i = w2; i < b2; i++)
+            params[i] = (float) ((random.nextDouble() * 2 - 1) * spread2);
+        double spread3 = Math.sqrt(1.0 / hidden2);
+        for (int i = w3; i < b3; i++)
+            params[i] = (float) ((random.nextDouble() * 2 - 1) * spread3);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: NnueTrainer <corpus> <network file> [epochs] [hidden] [hidden2]");
+            System.exit(1);
+        }
+        int epochs = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int hidden = args.length > 3 ? Integer.parseInt(args[3]) : 32;
+        int hidden2 = args.length > 4 ? Integer.parseInt(args[4]) : 16;
+        train(Paths.get(args[0]), Paths.get(args[1]), epochs, hidden, hidden2, GameSeeds.masterSeed());
+    }
+
+    public static void train(Path corpus, Path networkFile, int epochs, int hidden, int hidden2, long seed) throws IOException {
+        NnueTrainer trainer = new NnueTrainer(hidden, hidden2, new SplittableRandom(seed));
+        long start = System.currentTimeMillis();
+        for (int epoch = 1; epoch <= epochs; epoch++) {
+            trainer.epochLoss = 0;
+            trainer.epochPositions = 0;
+            GameCorpus.forEachPosition(corpus, TexelTuner.SKIPPED_OPENING_PLIES, trainer::add);
+            trainer.drain();
+            System.out.printf("Epoch %d: %,d positions, loss %.6f (%.1fs)%n", epoch, trainer.epochPositions,
+                    trainer.epochLoss / Math.max(1, trainer.epochPositions), (System.currentTimeMillis() - start) / 1000.0);
+        }
+        trainer.quantize().write(networkFile);
+        System.out.println("Wrote " + networkFile);
+    }
+
+    // Puts the position in a random slot of the buffer and trains on the one that was there
+    private void add(SearchBoard board, float result) {
+        int slot;
+        if (buffered < SHUFFLE_BUFFER) {
+            slot = buffered++;
+        }
+        else {
+            slot = random.nextInt(SHUFFLE_BUFFER);
+            train(slot);
+        }
+        int count = NnueNetwork.activeFeatures(board, active);
+        int base = slot * NnueNetwork.MAX_ACTIVE;
+        for (int i = 0; i < count; i++)
+            bufferFeatures[base + i] = (short) active[i];
+        bufferCounts[slot] = (byte) count;
+        bufferResults[slot] = result;
+    }
+
+    private void drain() {
+        for (int slot = buffered - 1; slot > 0; slot--) {
+            int other = random.nextInt(slot + 1);
+            swap(slot, other);
+        }
+        for (int slot = 0; slot < buffered; slot++)
+            train(slot);
+        buffered = 0;
+        if (inBatch > 0)
+            step();
+    }
+
+    private void swap(int x, int y) {
+        int baseX = x * NnueNetwork.MAX_ACTIVE;
+        int baseY = y * NnueNetwork.MAX_ACTIVE;
+        for (int i = 0; i < NnueNetwork.MAX_ACTIVE; i++) {
+            short tmp = bufferFeatures[baseX + i];
+            bufferFeatures[baseX + i] = bufferFeatures[baseY + i];
+            bufferFeatures[baseY + i] = tmp;
+        }
+        byte count = bufferCounts[x];
+        bufferCounts[x] = bufferCounts[y];
+        bufferCounts[y] = count;
+        float result = bufferResults[x];
+        bufferResults[x] = bufferResults[y];
+        bufferResults[y] = result;
+    }
+
+    // Forward and backward pass for one position, gradients are added to the batch
+    private void train(int slot) {
+        int base = slot * NnueNetwork.MAX_ACTIVE;
+        int count = bufferCounts[slot];
+
+        for (int i = 0; i < hidden; i++)
+            a[i] = params[b1 + i];
+        for (int f = 0; f < count; f++) {
+            int row = w1 + bufferFeatures[base + f] * hidden;
+            for (int i = 0; i < hidden; i++)
+                a[i] += params[row + i];
+        }
+        for (int i = 0; i < hidden; i++)
+            h1[i] = Math.min(1f, Math.max(0f, a[i]));
+        float y = params[b3];
+        for (int j = 0; j < hidden2; j++) {
+            float sum = params[b2 + j];
+            int row = w2 + j * hidden;
+            for (int i = 0; i < hidden; i++)
+                sum += params[row + i] * h1[i];
+            z2[j] = sum;
+            h2[j] = Math.min(1f, Math.max(0f, sum));
+            y += params[w3 + j] * h2[j];
+        }
+        float predicted = (float) (1.0 / (1.0 + Math.exp(-y)));
+        float diff = predicted - bufferResults[slot];
+        epochLoss += diff * diff;
+        epochPositions++;
+
+        float g = 2 * diff * predicted * (1 - predicted);
+        grads[b3] += g;
+        for (int j = 0; j < hidden2; j++) {
+            grads[w3 + j] += g * h2[j];
+            dz2[j] = z2[j] > 0 && z2[j] < 1 ? g * params[w3 + j] : 0;
+            grads[b2 + j] += dz2[j];
+            int row = w2 + j * hidden;
+            for (int i = 0; i < hidden; i++)
+                grads[row + i] += dz2[j] * h1[i];
+        }
+        for (int i = 0; i < hidden; i++) {
+            if (a[i] <= 0 || a[i] >= 1)
+                continue;
+            float da = 0;
+            for (int j = 0; j < hidden2; j++)
+                da += dz2[j] * params[w2 + j * hidden + i];
+            grads[b1 + i] += da;
+            for (int f = 0; f < count; f++)
+                grads[w1 + bufferFeatures[base + f] * hidden + i] += da;
+        }
+
+        if (++inBatch == BATCH)
+            step();
+    }
+
+    private void step() {
+        steps++;
+        double correction1 = 1 - Math.pow(BETA1, steps);
+        double correction2 = 1 - Math.pow(BETA2, steps);
+        for (int p = 0; p < params.length; p++) {
+            float grad = grads[p] / inBatch;
+            grads[p] = 0;
+            m[p] = (float) (BETA1 * m[p] + (1 - BETA1) * grad);
+            v[p] = (float) (BETA2 * v[p] + (1 - BETA2) * grad * grad);
+            double update = LEARNING_RATE * (m[p] / correction1) / (Math.sqrt(v[p] / correction2) + EPSILON);
+            float limit = p < w2 ? MAX_FIRST_WEIGHT : (p < b2 || (p >= w3 && p < b3) ? MAX_INNER_WEIGHT : Float.MAX_VALUE);
+            params[p] = Math.max(-limit, Math.min(limit, (float) (params[p] - update)));
+        }
+        inBatch = 0;
+    }
+
+    /**
+     * Scales the float network to the integer units NnueNetwork works in.
+     */
+    NnueNetwork quantize() {
+        short[] qw1 = new short[NnueNetwork.FEATURES * hidden];
+        for (int i = 0; i < qw1.length; i++)
+            qw1[i] = (short) Math.round(params[w1 + i] * NnueNetwork.QA);
+        short[] qb1 = new short[hidden];
+        for (int i = 0; i < hidden; i++)
+            qb1[i] = (short) Math.round(params[b1 + i] * NnueNetwork.QA);
+        byte[] qw2 = new byte[hidden * hidden2];
+        for (int i = 0; i < qw2.length; i++)
+            qw2[i] = (byte) Math.round(params[w2 + i] * NnueNetwork.QB);
+        int[] qb2 = new int[hidden2];
+        for (int j = 0; j < hidden2; j++)
+            qb2[j] = Math.round(params[b2 + j] * NnueNetwork.QA * NnueNetwork.QB);
+        byte[] qw3 = new byte[hidden2];
+        for (int j = 0; j < hidden2; j++)
+            qw3[j] = (byte) Math.round(params[w3 + j] * NnueNetwork.QB);
+        int qb3 = Math.round(params[b3] * NnueNetwork.QA * NnueNetwork.QB);
+        return new NnueNetwork(hidden, hidden2, OUTPUT_SCALE, qw1, qb1, qw2, qb2, qw3, qb3);
+    }
+}
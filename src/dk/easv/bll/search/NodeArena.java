@@ -0,0 +1,132 @@
+package dk.easv.bll.search;
+
+/**
+ * Fixed capacity storage for MCTS nodes.
+ * Nodes are plain int indexes, so the tree costs no objects and its memory use
+ * is decided once, when the arena is created. Freed nodes go on a free list
+ * (threaded through nextSibling) and are handed out again.
+ *
+ * Subclasses only decide where the node fields live, on the heap or off it;
+ * allocation and freeing work the same for all of them.
+ */
+public abstract class NodeArena {
+
+    public static final int NONE = -1;
+
+    private final int capacity;
+    private int top;            // nodes at or above this index have never been handed out
+    private int freeHead = NONE;
+    private int used;
+
+    protected NodeArena(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Creates an on-heap arena holding as many nodes as fit in the given number of bytes.
+     */
+    public static NodeArena ofBytes(long bytes) {
+        return new HeapNodeArena((int) Math.min(Integer.MAX_VALUE - 8, bytes / HeapNodeArena.BYTES_PER_NODE));
+    }
+
+    /**
+     * @return a fresh node for the given cell, or NONE if the arena is full
+     */
+    public int allocate(int cell) {
+        int node;
+        if (freeHead != NONE) {
+            node = freeHead;
+            freeHead = getNextSibling(node);
+        }
+        else if (top < capacity)
+            node = top++;
+        else
+            return NONE;
+
+        init(node, cell);
+        used++;
+        return node;
+    }
+
+    /**
+     * Returns a node and everything below it to the free list.
+     * Nodes waiting to be freed are chained through nextSibling, so no extra memory is needed.
+     */
+    public void freeSubtree(int node) {
+        setNextSibling(node, NONE);
+        int pending = node;
+        while (pending != NONE) {
+            int current = pending;
+            pending = getNextSibling(current);
+            int child = getFirstChild(current);
+            while (child != NONE) {
+                int next = getNextSibling(child);
+                setNextSibling(child, pending);
+                pending = child;
+                child = next;
+            }
+            setNextSibling(current, freeHead);
+            freeHead = current;
+            used--;
+        }
+    }
+
+    /**
+     * Frees all children of a node but keeps the node and its statistics,
+     * so it turns back into a leaf.
+     */
+    public void collapse(int node) {
+        int child = getFirstChild(node);
+        while (child != NONE) {
+            int next = getNextSibling(child);
+            freeSubtree(child);
+            child = next;
+        }
+        setFirstChild(node, NONE);
+    }
+
+    /**
+     * Drops every node at once.
+     */
+    public void clear() {
+        top = 0;
+        freeHead = NONE;
+        used = 0;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getUsed() {
+        return used;
+    }
+
+    public int getAvailable() {
+        return capacity - used;
+    }
+
+    /**
+     * Resets a node to an unvisited leaf for the given cell.
+     */
+    protected abstract void init(int node, int cell);
+
+    public abstract int getFirstChild(int node);
+
+    public abstract void setFirstChild(int node, int child);
+
+    public abstract int getNextSibling(int node);
+
+    public abstract void setNextSibling(int node, int sibling);
+
+    public abstract int getVisits(int node);
+
+    public abstract float getWins(int node);
+
+    /**
+     * Adds one visit with the given result (1 win, 0.5 tie, 0 loss).
+     */
+    public abstract void update(int node, float result);
+
+    public abstract int getMove(int node);
+}
@@ -0,0 +1,150 @@
+package dk.easv.bll.search;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * NodeArena stored outside the Java heap, either in direct memory or in a
+ * memory-mapped file. Large trees then add nothing to GC work or object headers.
+ *
+ * Every node is a fixed 20 byte record:
+ * firstChild (int) | nextSibling (int) | visits (int) | wins (float) | move (byte) | 3 bytes padding
+ *
+ * A single buffer is limited to 2 GB, so the records are spread over chunks of
+ * 2^24 nodes each.
+ */
+public class OffHeapNodeArena extends NodeArena implements Closeable {
+
+    public static final int RECORD_BYTES = 20;
+
+    private static final int FIRST_CHILD = 0;
+    private static final int NEXT_SIBLING = 4;
+    private static final int VISITS = 8;
+    private static final int WINS = 12;
+    private static final int MOVE = 16;
+
+    private static final int CHUNK_BITS = 24;
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+    private final ByteBuffer[] chunks;
+    private final FileChannel channel;
+
+    /**
+     * Creates an arena in direct (off-heap) memory.
+     */
+    public OffHeapNodeArena(int capacity) {
+        super(capacity);
+        channel = null;
+        chunks = new ByteBuffer[chunkCount(capacity)];
+        for (int i = 0; i < chunks.length; i++)
+            chunks[i] = ByteBuffer.allocateDirect(chunkBytes(capacity, i)).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Creates an arena in a memory-mapped file, so the OS can page the tree in and out.
+     * The file is created if needed and grown to fit the whole arena.
+     */
+    public OffHeapNodeArena(int capacity, Path file) throws IOException {
+        super(capacity);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        chunks = new ByteBuffer[chunkCount(capacity)];
+        long position = 0;
+        for (int i = 0; i < chunks.length; i++) {
+            int size = chunkBytes(capacity, i);
+            chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, position, size).order(ByteOrder.nativeOrder());
+            position += size;
+        }
+    }
+
+    /**
+     * Creates a direct memory arena holding as many nodes as fit in the given number of bytes.
+     */
+    public static OffHeapNodeArena ofBytes(long bytes) {
+        return new OffHeapNodeArena((int) Math.min(Integer.MAX_VALUE - 8, bytes / RECORD_BYTES));
+    }
+
+    private static int chunkCount(int capacity) {
+        return (int) (((long) capacity + CHUNK_MASK) >>> CHUNK_BITS);
+    }
+
+    private static int chunkBytes(int capacity, int chunk) {
+        long nodes = Math.min(1L << CHUNK_BITS, capacity - ((long) chunk << CHUNK_BITS));
+        return (int) (nodes * RECORD_BYTES);
+    }
+
+    private ByteBuffer chunk(int node) {
+        return chunks[node >>> CHUNK_BITS];
+    }
+
+    private static int offset(int node) {
+        return (node & CHUNK_MASK) * RECORD_BYTES;
+    }
+
+    @Override
+    protected void init(int node, int cell) {
+        ByteBuffer buffer = chunk(node);
+        int offset = offset(node);
+        buffer.putInt(offset + FIRST_CHILD, NONE);
+        buffer.putInt(offset + NEXT_SIBLING, NONE);
+        buffer.putInt(offset + VISITS, 0);
+        buffer.putFloat(offset + WINS, 0);
+        buffer.put(offset + MOVE, (byte) cell);
+    }
+
+    @Override
+    public int getFirstChild(int node) {
+        return chunk(node).getInt(offset(node) + FIRST_CHILD);
+    }
+
+    @Override
+    public void setFirstChild(int node, int child) {
+        chunk(node).putInt(offset(node) + FIRST_CHILD, child);
+    }
+
+    @Override
+    public int getNextSibling(int node) {
+        return chunk(node).getInt(offset(node) + NEXT_SIBLING);
+    }
+
+    @Override
+    public void setNextSibling(int node, int sibling) {
+        chunk(node).putInt(offset(node) + NEXT_SIBLING, sibling);
+    }
+
+    @Override
+    public int getVisits(int node) {
+        return chunk(node).getInt(offset(node) + VISITS);
+    }
+
+    @Override
+    public float getWins(int node) {
+        return chunk(node).getFloat(offset(node) + WINS);
+    }
+
+    @Override
+    public void update(int node, float result) {
+        ByteBuffer buffer = chunk(node);
+        int offset = offset(node);
+        buffer.putInt(offset + VISITS, buffer.getInt(offset + VISITS) + 1);
+        buffer.putFloat(offset + WINS, buffer.getFloat(offset + WINS) + result);
+    }
+
+    @Override
+    public int getMove(int node) {
+        return chunk(node).get(offset(node) + MOVE);
+    }
+
+    /**
+     * Closes the backing file, if any. Direct memory is released by the garbage collector.
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel != null)
+            channel.close();
+    }
+}
@@ -0,0 +1,83 @@
+package dk.easv.bll.search;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * A heavier playout policy that is still cheap: every decision is a few lookups
+ * in precomputed 3x3 tables and some bit operations on the masks of one micro-board.
+ *
+ * In order of preference it plays a move that wins the micro-board, a move that
+ * blocks an opponent's two in a row, and otherwise a random move. Among blocks
+ * and random moves it avoids sending the opponent to a closed board, which would
+ * give them a free choice.
+ */
+public class PatternPolicy implements IMovePolicy {
+
+    // For a 9 bit mask of own marks: the cells that would complete a line
+    private static final int[] COMPLETES = new int[512];
+
+    static {
+        for (int mask = 0; mask < 512; mask++) {
+            int cells = 0;
+            for (int local = 0; local < 9; local++)
+                if ((mask & (1 << local)) == 0 && SearchBoard.WINNING_MASK[mask | (1 << local)])
+                    cells |= 1 << local;
+            COMPLETES[mask] = cells;
+        }
+    }
+
+    @Override
+    public int selectMove(SearchBoard board, int[] moves, int count, RandomGenerator random) {
+        int player = board.getCurrentPlayer();
+        int open = SearchBoard.FULL_MASK
+                & ~(board.getMacroMask(0) | board.getMacroMask(1) | board.getTiedMask());
+        int active = board.getActiveBoard();
+        if (active == SearchBoard.ANY_BOARD)
+            return selectFreeChoice(board, player, open, moves, count, random);
+
+        int own = board.getMask(player, active);
+        int theirs = board.getMask(1 - player, active);
+        int empty = ~(own | theirs) & SearchBoard.FULL_MASK;
+
+        int wins = COMPLETES[own] & empty;
+        if (wins != 0)
+            return SearchBoard.CELL_AT[active][randomBit(wins, random)];
+
+        // Sending the opponent back here is only safe if this move leaves the board open
+        int safe = open;
+        if (Integer.bitCount(empty) == 1)
+            safe &= ~(1 << active);
+
+        int blocks = COMPLETES[theirs] & empty;
+        if (blocks != 0)
+            return SearchBoard.CELL_AT[active][randomBit((blocks & safe) != 0 ? blocks & safe : blocks, random)];
+
+        int quiet = empty & safe;
+        return SearchBoard.CELL_AT[active][randomBit(quiet != 0 ? quiet : empty, random)];
+    }
+
+    private static int selectFreeChoice(SearchBoard board, int player, int open, int[] moves, int count, RandomGenerator random) {
+        for (int b = 0; b < 9; b++) {
+            if ((open & (1 << b)) == 0)
+                continue;
+            int own = board.getMask(player, b);
+            int wins = COMPLETES[own] & ~(own | board.getMask(1 - player, b)) & SearchBoard.FULL_MASK;
+            if (wins != 0)
+                return SearchBoard.CELL_AT[b][randomBit(wins, random)];
+        }
+        // A few tries for a move that does not hand the free choice straight back
+        for (int i = 0; i < 4; i++) {
+            int cell = moves[random.nextInt(count)];
+            if ((open & (1 << SearchBoard.CELL_LOCAL[cell])) != 0)
+                return cell;
+        }
+        return moves[random.nextInt(count)];
+    }
+
+    // The index of a random set bit in a non-zero mask
+    private static int randomBit(int mask, RandomGenerator random) {
+        for (int skip = random.nextInt(Integer.bitCount(mask)); skip > 0; skip--)
+            mask &= mask - 1;
+        return Integer.numberOfTrailingZeros(mask);
+    }
+}
@@ -0,0 +1,73 @@
+package dk.easv.bll.search;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * Compares the pattern playout policy against uniformly random playouts.
+ * Reports playouts per second for each policy, then plays MCTS against MCTS with
+ * the same time per move, one side using each policy, swapping colors every game.
+ *
+ * Usage: PlayoutBenchmark [games] [millis per move]
+ */
+public class PlayoutBenchmark {
+
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int millis = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+
+        System.out.printf("Uniform random: %,d playouts/sec%n", playoutsPerSecond(new RandomMovePolicy()));
+        System.out.printf("Pattern:        %,d playouts/sec%n", playoutsPerSecond(new PatternPolicy()));
+
+        int wins = 0;
+        int ties = 0;
+        for (int game = 0; game < games; game++) {
+            int patternPlayer = game % 2;
+            int winner = playGame(patternPlayer, millis, game);
+            if (winner == patternPlayer)
+                wins++;
+            else if (winner == SearchBoard.TIE)
+                ties++;
+        }
+        System.out.printf("Pattern vs uniform at %d ms/move: %d wins, %d ties, %d losses (%.1f%%)%n",
+                millis, wins, ties, games - wins - ties, 100.0 * (wins + 0.5 * ties) / games);
+    }
+
+    private static long playoutsPerSecond(IMovePolicy policy) {
+        PlayoutSimulator simulator = new PlayoutSimulator();
+        simulator.setMovePolicy(policy);
+        SplittableRandom random = new SplittableRandom(1);
+        SearchBoard board = new SearchBoard();
+
+        for (int i = 0; i < 20_000; i++) // warm up
+            simulator.playout(board, random);
+        long playouts = 0;
+        long start = System.nanoTime();
+        long end = start + 2_000_000_000L;
+        while (System.nanoTime() < end) {
+            for (int i = 0; i < 256; i++)
+                simulator.playout(board, random);
+            playouts += 256;
+        }
+        return playouts * 1_000_000_000L / (System.nanoTime() - start);
+    }
+
+    private static int playGame(int patternPlayer, int millis, long seed) {
+        MctsSearch[] players = new MctsSearch[2];
+        for (int p = 0; p < 2; p++)
+            players[p] = new MctsSearch(new HeapNodeArena(1 << 20), new Random(seed * 2 + p));
+        PlayoutSimulator pattern = new PlayoutSimulator();
+        pattern.setMovePolicy(new PatternPolicy());
+        players[patternPlayer].setSimulator(pattern);
+
+        SearchBoard board = new SearchBoard();
+        while (!board.isGameOver()) {
+            MctsSearch search = players[board.getCurrentPlayer()];
+            int cell = search.search(new SearchBoard(board), System.currentTimeMillis() + millis);
+            board.makeMove(cell);
+            players[0].advance(cell);
+            players[1].advance(cell);
+        }
+        return board.getWinner();
+    }
+}
@@ -0,0 +1,117 @@
+package dk.easv.bll.search;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Plays simulated games for the Monte Carlo searchers.
+ *
+ * With a cutoff of 0 every playout runs to the end of the game. With a cutoff of K
+ * a playout stops after K plies, or as soon as no macro line can be completed by
+ * either player any more, and the position is scored by the evaluator instead.
+ * That gives more and shorter simulations, each with less noise than one random
+ * finish.
+ */
+public class PlayoutSimulator {
+
+    public static final int FULL_GAME = 0;
+
+    // Evaluation scores are turned into win chances with 1 / (1 + e^(-score / SCALE))
+    private static final double SCALE = 100.0;
+
+    private final int cutoffPlies;
+    private final IEvaluator evaluator;
+    private final int[] moves = new int[81];
+    private IMovePolicy policy = new RandomMovePolicy();
+
+    /**
+     * Creates a simulator that plays every game to the end.
+     */
+    public PlayoutSimulator() {
+        this(FULL_GAME, null);
+    }
+
+    /**
+     * @param cutoffPlies stop after this many plies, or FULL_GAME to play to the end
+     * @param evaluator scores positions where a playout is cut off
+     */
+    public PlayoutSimulator(int cutoffPlies, IEvaluator evaluator) {
+        if (cutoffPlies != FULL_GAME && evaluator == null)
+            throw new IllegalArgumentException("A cut off playout needs an evaluator");
+        this.cutoffPlies = cutoffPlies;
+        this.evaluator = evaluator;
+    }
+
+    public void setMovePolicy(IMovePolicy policy) {
+        this.policy = policy;
+    }
+
+    public IMovePolicy getMovePolicy() {
+        return policy;
+    }
+
+    public int getCutoffPlies() {
+        return cutoffPlies;
+    }
+
+    /**
+     * Attaches the evaluator to the board the search walks on, so it is kept up
+     * to date through every move. Call once before searching.
+     */
+    public void prepare(SearchBoard board) {
+        if (cutoffPlies != FULL_GAME)
+            board.setEvaluator(evaluator);
+    }
+
+    /**
+     * Plays one simulated game from the current position.
+     * The board is returned in the same state as it was given.
+     * @return the result for player 0: 1 win, 0.5 tie, 0 loss, or a win chance in between at a cutoff
+     */
+    public float playout(SearchBoard board, RandomGenerator random) {
+        int startPly = board.getPly();
+        float result;
+        while (true) {
+            if (board.isGameOver()) {
+                result = resultOf(board.getWinner());
+                break;
+            }
+            if (cutoffPlies != FULL_GAME) {
+                if (isDecidedTie(board)) {
+                    result = 0.5f;
+                    break;
+                }
+                if (board.getPly() - startPly >= cutoffPlies) {
+                    result = (float) (1.0 / (1.0 + Math.exp(-evaluator.evaluate() / SCALE)));
+                    break;
+                }
+            }
+            int count = board.getMoves(moves);
+            board.makeMove(policy.selectMove(board, moves, count, random));
+        }
+        while (board.getPly() > startPly)
+            board.unmakeMove();
+        return result;
+    }
+
+    /**
+     * @return the result for player 0 of a finished game
+     */
+    public static float resultOf(int winner) {
+        return winner == 0 ? 1f : winner == 1 ? 0f : 0.5f;
+    }
+
+    /**
+     * True when every macro line holds a board of both players or a tied board,
+     * so nobody can win any more.
+     */
+    public static boolean isDecidedTie(SearchBoard board) {
+        int won0 = board.getMacroMask(0);
+        int won1 = board.getMacroMask(1);
+        int tied = board.getTiedMask();
+        for (int line : SearchBoard.LINES) {
+            if ((line & (won1 | tied)) == 0 || (line & (won0 | tied)) == 0)
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,211 @@
+package dk.easv.bll.search;
+
+/**
+ * Depth-first proof-number search (df-pn) that tries to prove a forced macro win
+ * for the player to move. It only answers "win" or "no forced win", which makes it
+ * far sharper than a heuristic search once the game is close to decided.
+ *
+ * Proof and disproof numbers are kept in a TranspositionTable under a salted key,
+ * so the table can be shared with other searchers. The search stops after the
+ * given number of expanded nodes, whether or not it found an answer.
+ */
+public class ProofNumberSearch {
+
+    public static final int UNKNOWN = 0;
+    public static final int PROVEN = 1;     // the player to move can force a win
+    public static final int DISPROVEN = 2;  // the opponent can hold at least a tie
+
+    private static final int INF = 1 << 30;
+    // Proof numbers depend on who is trying to win, so each attacker gets its own salt
+    private static final long[] SALTS = {0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL};
+
+    private final TranspositionTable table;
+    private final int[][] moveBuffers = new int[82][81];
+
+    private int attacker;
+    private long salt;
+    private long nodeBudget;
+    private long nodes;
+    private int result = UNKNOWN;
+    private int provenMove = -1;
+
+    public ProofNumberSearch(TranspositionTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Quick test for positions worth handing to the solver: the player to move
+     * owns two micro-boards of a macro line and the third one is still open.
+     */
+    public static boolean isTactical(SearchBoard board) {
+        if (board.isGameOver())
+            return false;
+        int own = board.getMacroMask(board.getCurrentPlayer());
+        int blocked = board.getMacroMask(1 - board.getCurrentPlayer()) | board.getTiedMask();
+        for (int line : SearchBoard.LINES)
+            if (Integer.bitCount(own & line) == 2 && (blocked & line) == 0)
+                return true;
+        return false;
+    }
+
+    /**
+     * Tries to prove a win for the player to move.
+     * The board is returned in the same state as it was given.
+     * @return PROVEN, DISPROVEN or UNKNOWN if the node budget ran out
+     */
+    public int solve(SearchBoard board, long nodeBudget) {
+        this.attacker = board.getCurrentPlayer();
+        this.salt = SALTS[attacker];
+        this.nodeBudget = nodeBudget;
+        this.nodes = 0;
+        this.provenMove = -1;
+
+        if (board.isGameOver()) {
+            result = DISPROVEN;
+            return result;
+        }
+
+        mid(board, INF, INF);
+
+        long entry = lookup(board.getHash());
+        if (proofOf(entry) == 0) {
+            result = PROVEN;
+            provenMove = findProvenMove(board);
+        }
+        else if (disproofOf(entry) == 0)
+            result = DISPROVEN;
+        else
+            result = UNKNOWN;
+        return result;
+    }
+
+    /**
+     * @return the cell of a winning move after a PROVEN result, otherwise -1
+     */
+    public int getProvenMove() {
+        return provenMove;
+    }
+
+    public int getResult() {
+        return result;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    private void mid(SearchBoard board, int thPn, int thDn) {
+        nodes++;
+        int[] moves = moveBuffers[board.getPly() % moveBuffers.length];
+        int count = board.getMoves(moves);
+        boolean orNode = board.getCurrentPlayer() == attacker;
+
+        while (true) {
+            int pn;
+            int dn;
+            int best = -1;
+            int bestValue = INF + 1;
+            int secondValue = INF;
+            int bestOther = 0;
+
+            if (orNode) {
+                // OR node: one proven child is enough, all children must be disproven
+                dn = 0;
+                for (int i = 0; i < count; i++) {
+                    long child = childEntry(board, moves[i]);
+                    int cpn = proofOf(child);
+                    dn = add(dn, disproofOf(child));
+                    if (cpn < bestValue) {
+                        secondValue = bestValue;
+                        bestValue = cpn;
+                        best = i;
+                        bestOther = disproofOf(child);
+                    }
+                    else if (cpn < secondValue)
+                        secondValue = cpn;
+                }
+                pn = bestValue;
+            }
+            else {
+                // AND node: every child must be proven, one disproven child is enough
+                pn = 0;
+                for (int i = 0; i < count; i++) {
+                    long child = childEntry(board, moves[i]);
+                    int cdn = disproofOf(child);
+                    pn = add(pn, proofOf(child));
+                    if (cdn < bestValue) {
+                        secondValue = bestValue;
+                        bestValue = cdn;
+                        best = i;
+                        bestOther = proofOf(child);
+                    }
+                    else if (cdn < secondValue)
+                        secondValue = cdn;
+                }
+                dn = bestValue;
+            }
+            secondValue = Math.min(secondValue, INF);
+
+            table.store(board.getHash() ^ salt, pack(pn, dn));
+            if (pn >= thPn || dn >= thDn || nodes >= nodeBudget)
+                return;
+
+            int childThPn;
+            int childThDn;
+            if (orNode) {
+                childThPn = Math.min(thPn, secondValue + 1);
+                childThDn = (int) Math.min(INF, (long) thDn - dn + bestOther);
+            }
+            else {
+                childThDn = Math.min(thDn, secondValue + 1);
+                childThPn = (int) Math.min(INF, (long) thPn - pn + bestOther);
+            }
+
+            board.makeMove(moves[best]);
+            mid(board, childThPn, childThDn);
+            board.unmakeMove();
+        }
+    }
+
+    private long childEntry(SearchBoard board, int cell) {
+        board.makeMove(cell);
+        long entry;
+        if (board.isGameOver())
+            entry = board.getWinner() == attacker ? pack(0, INF) : pack(INF, 0);
+        else
+            entry = lookup(board.getHash());
+        board.unmakeMove();
+        return entry;
+    }
+
+    private int findProvenMove(SearchBoard board) {
+        int[] moves = moveBuffers[board.getPly() % moveBuffers.length];
+        int count = board.getMoves(moves);
+        for (int i = 0; i < count; i++)
+            if (proofOf(childEntry(board, moves[i])) == 0)
+                return moves[i];
+        return -1;
+    }
+
+    private long lookup(long hash) {
+        long entry = table.probe(hash ^ salt);
+        return entry == TranspositionTable.MISSING ? pack(1, 1) : entry;
+    }
+
+    // Saturating addition, proof numbers never go past INF
+    private static int add(int a, int b) {
+        return (int) Math.min(INF, (long) a + b);
+    }
+
+    private static long pack(int pn, int dn) {
+        return ((long) pn << 32) | dn;
+    }
+
+    private static int proofOf(long entry) {
+        return (int) (entry >>> 32);
+    }
+
+    private static int disproofOf(long entry) {
+        return (int) entry;
+    }
+}
@@ -0,0 +1,14 @@
+package dk.easv.bll.search;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Uniformly random playouts, the cheapest policy there is.
+ */
+public class RandomMovePolicy implements IMovePolicy {
+
+    @Override
+    public int selectMove(SearchBoard board, int[] moves, int count, RandomGenerator random) {
+        return moves[random.nextInt(count)];
+    }
+}
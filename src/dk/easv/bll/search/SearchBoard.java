@@ -0,0 +1,343 @@
+package dk.easv.bll.search;
+
+import dk.easv.bll.field.IField;
+import dk.easv.bll.field.Symmetry;
+import dk.easv.bll.game.IGameState;
+import dk.easv.bll.move.IMove;
+import dk.easv.bll.move.Move;
+
+import java.util.SplittableRandom;
+
+/**
+ * Compact, mutable board used by the search code.
+ * Each micro-board is kept as two 9 bit masks (one per player), so a move can be
+ * made and taken back again without cloning any String arrays.
+ *
+ * Cells are numbered x*9+y, the same (x,y) as used by IField.getBoard().
+ * Micro-boards and the cells inside them are numbered row by row 0..8.
+ * The rules follow GameManager.
+ */
+public class SearchBoard {
+
+    public static final int OPEN = 0;
+    public static final int WON_0 = 1;
+    public static final int WON_1 = 2;
+    public static final int TIED = 3;
+
+    public static final int ANY_BOARD = -1;
+
+    public static final int NO_WINNER = -1;
+    public static final int TIE = 2;
+
+    public static final int FULL_MASK = 0x1FF;
+
+    // The 8 lines of a 3x3 board as bit masks: rows, columns and diagonals
+    public static final int[] LINES = {0x007, 0x038, 0x1C0, 0x049, 0x092, 0x124, 0x111, 0x054};
+
+    public static final boolean[] WINNING_MASK = new boolean[512];
+    public static final int[] CELL_BOARD = new int[81];
+    public static final int[] CELL_LOCAL = new int[81];
+    public static final int[][] CELL_AT = new int[9][9];
+
+    // Zobrist keys, fixed seed so hashes are the same in every run
+    private static final long[][] CELL_KEYS = new long[2][81];
+    private static final long[] ACTIVE_KEYS = new long[10];
+    private static final long SIDE_KEY;
+
+    static {
+        for (int mask = 0; mask < 512; mask++)
+            for (int line : LINES)
+                if ((mask & line) == line)
+                    WINNING_MASK[mask] = true;
+
+        for (int x = 0; x < 9; x++)
+            for (int y = 0; y < 9; y++) {
+                int cell = x * 9 + y;
+                int board = (x / 3) * 3 + y / 3;
+                int local = (x % 3) * 3 + y % 3;
+                CELL_BOARD[cell] = board;
+                CELL_LOCAL[cell] = local;
+                CELL_AT[board][local] = cell;
+            }
+
+        SplittableRandom keyRandom = new SplittableRandom(0x5EEDL);
+        for (int p = 0; p < 2; p++)
+            for (int cell = 0; cell < 81; cell++)
+                CELL_KEYS[p][cell] = keyRandom.nextLong();
+        for (int i = 0; i < ACTIVE_KEYS.length; i++)
+            ACTIVE_KEYS[i] = keyRandom.nextLong();
+        SIDE_KEY = keyRandom.nextLong();
+    }
+
+    private final int[][] masks = new int[2][9];
+    private final int[] macroMasks = new int[2];
+    private int tiedMask;
+    private int activeBoard = ANY_BOARD;
+    private int currentPlayer;
+    private int winner = NO_WINNER;
+    private int ply;
+    private long hash = ACTIVE_KEYS[0];
+
+    // Undo information, one packed entry per ply: cell | previous active board | closed flag
+    private final int[] history = new int[81];
+
+    private IEvaluator evaluator;
+
+    public SearchBoard() {
+    }
+
+    public SearchBoard(SearchBoard other) {
+        for (int p = 0; p < 2; p++) {
+            System.arraycopy(other.masks[p], 0, masks[p], 0, 9);
+            macroMasks[p] = other.macroMasks[p];
+        }
+        tiedMask = other.tiedMask;
+        activeBoard = other.activeBoard;
+        currentPlayer = other.currentPlayer;
+        winner = other.winner;
+        ply = other.ply;
+        hash = other.hash;
+        System.arraycopy(other.history, 0, history, 0, ply);
+    }
+
+    /**
+     * Builds a search board from the game state handed to a bot.
+     * The player to move is derived from the move number, like GameManager does.
+     */
+    public static SearchBoard fromState(IGameState state) {
+        SearchBoard sb = new SearchBoard();
+        IField field = state.getField();
+        String[][] board = field.getBoard();
+        String[][] macroboard = field.getMacroboard();
+
+        for (int x = 0; x < 9; x++)
+            for (int y = 0; y < 9; y++) {
+                int cell = x * 9 + y;
+                if (board[x][y].equals("0")) {
+                    sb.masks[0][CELL_BOARD[cell]] |= 1 << CELL_LOCAL[cell];
+                    sb.hash ^= CELL_KEYS[0][cell];
+                }
+                else if (board[x][y].equals("1")) {
+                    sb.masks[1][CELL_BOARD[cell]] |= 1 << CELL_LOCAL[cell];
+                    sb.hash ^= CELL_KEYS[1][cell];
+                }
+            }
+
+        int available = 0;
+        int lastAvailable = ANY_BOARD;
+        for (int i = 0; i < 3; i++)
+            for (int k = 0; k < 3; k++) {
+                int b = i * 3 + k;
+                String value = macroboard[i][k];
+                if (value.equals("0"))
+                    sb.macroMasks[0] |= 1 << b;
+                else if (value.equals("1"))
+                    sb.macroMasks[1] |= 1 << b;
+                else if (value.equals(IField.AVAILABLE_FIELD)) {
+                    available++;
+                    lastAvailable = b;
+                }
+                else if (!value.equals(IField.EMPTY_FIELD))
+                    sb.tiedMask |= 1 << b;
+            }
+        sb.activeBoard = available == 1 ? lastAvailable : ANY_BOARD;
+        sb.currentPlayer = state.getMoveNumber() % 2;
+        sb.hash ^= ACTIVE_KEYS[0] ^ ACTIVE_KEYS[sb.activeBoard + 1];
+        if (sb.currentPlayer == 1)
+            sb.hash ^= SIDE_KEY;
+
+        if (WINNING_MASK[sb.macroMasks[0]])
+            sb.winner = 0;
+        else if (WINNING_MASK[sb.macroMasks[1]])
+            sb.winner = 1;
+        else if ((sb.macroMasks[0] | sb.macroMasks[1] | sb.tiedMask) == FULL_MASK || available == 0)
+            sb.winner = TIE;
+        return sb;
+    }
+
+    /**
+     * Attaches an evaluator, which is kept up to date on every make and unmake.
+     */
+    public void setEvaluator(IEvaluator evaluator) {
+        this.evaluator = evaluator;
+        if (evaluator != null)
+            evaluator.reset(this);
+    }
+
+    public IEvaluator getEvaluator() {
+        return evaluator;
+    }
+
+    /**
+     * Writes the legal moves into the given array.
+     * @return the number of moves written
+     */
+    public int getMoves(int[] moves) {
+        if (winner != NO_WINNER)
+            return 0;
+        int count = 0;
+        if (activeBoard != ANY_BOARD)
+            return addMoves(activeBoard, moves, count);
+        for (int b = 0; b < 9; b++)
+            if (getStatus(b) == OPEN)
+                count = addMoves(b, moves, count);
+        return count;
+    }
+
+    private int addMoves(int b, int[] moves, int count) {
+        int empty = ~(masks[0][b] | masks[1][b]) & FULL_MASK;
+        while (empty != 0) {
+            int local = Integer.numberOfTrailingZeros(empty);
+            empty &= empty - 1;
+            moves[count++] = CELL_AT[b][local];
+        }
+        return count;
+    }
+
+    public void makeMove(int cell) {
+        int b = CELL_BOARD[cell];
+        int local = CELL_LOCAL[cell];
+        int player = currentPlayer;
+
+        masks[player][b] |= 1 << local;
+        boolean closed = false;
+        if (WINNING_MASK[masks[player][b]]) {
+            macroMasks[player] |= 1 << b;
+            closed = true;
+        }
+        else if ((masks[0][b] | masks[1][b]) == FULL_MASK) {
+            tiedMask |= 1 << b;
+            closed = true;
+        }
+
+        history[ply++] = cell | ((activeBoard + 1) << 7) | (closed ? 1 << 11 : 0);
+
+        if (closed) {
+            if (WINNING_MASK[macroMasks[player]])
+                winner = player;
+            else if ((macroMasks[0] | macroMasks[1] | tiedMask) == FULL_MASK)
+                winner = TIE;
+        }
+
+        int previousActive = activeBoard;
+        activeBoard = getStatus(local) == OPEN ? local : ANY_BOARD;
+        currentPlayer = 1 - player;
+        hash ^= CELL_KEYS[player][cell] ^ ACTIVE_KEYS[previousActive + 1] ^ ACTIVE_KEYS[activeBoard + 1] ^ SIDE_KEY;
+
+        if (evaluator != null)
+            evaluator.onMake(this, cell, closed);
+    }
+
+    public void unmakeMove() {
+        int entry = history[--ply];
+        int cell = entry & 0x7F;
+        boolean closed = (entry & (1 << 11)) != 0;
+        int b = CELL_BOARD[cell];
+        int player = 1 - currentPlayer;
+
+        masks[player][b] &= ~(1 << CELL_LOCAL[cell]);
+        if (closed) {
+            macroMasks[player] &= ~(1 << b);
+            tiedMask &= ~(1 << b);
+        }
+        int previousActive = ((entry >> 7) & 0xF) - 1;
+        hash ^= CELL_KEYS[player][cell] ^ ACTIVE_KEYS[activeBoard + 1] ^ ACTIVE_KEYS[previousActive + 1] ^ SIDE_KEY;
+        activeBoard = previousActive;
+        currentPlayer = player;
+        winner = NO_WINNER;
+
+        if (evaluator != null)
+            evaluator.onUnmake(this, cell, closed);
+    }
+
+    public int getStatus(int b) {
+        int bit = 1 << b;
+        if ((macroMasks[0] & bit) != 0) return WON_0;
+        if ((macroMasks[1] & bit) != 0) return WON_1;
+        if ((tiedMask & bit) != 0) return TIED;
+        return OPEN;
+    }
+
+    public int getMask(int player, int b) {
+        return masks[player][b];
+    }
+
+    public int getMacroMask(int player) {
+        return macroMasks[player];
+    }
+
+    public int getTiedMask() {
+        return tiedMask;
+    }
+
+    /**
+     * The symmetries of the square that leave the position unchanged, including
+     * won boards and the board the next move must go to.
+     * @return the stabilizer as a bit mask of transforms, see Symmetry
+     */
+    public int getSymmetries() {
+        int stabilizer = Symmetry.IDENTITY;
+        for (int t = 1; t < Symmetry.COUNT; t++)
+            if (isFixedBy(t))
+                stabilizer |= 1 << t;
+        return stabilizer;
+    }
+
+    private boolean isFixedBy(int t) {
+        if (activeBoard != ANY_BOARD && Symmetry.transformSmall(t, activeBoard) != activeBoard)
+            return false;
+        for (int b = 0; b < 9; b++) {
+            int image = Symmetry.transformSmall(t, b);
+            if (masks[0][image] != Symmetry.transformMask(t, masks[0][b])
+                    || masks[1][image] != Symmetry.transformMask(t, masks[1][b]))
+                return false;
+        }
+        // Who won a board follows from its cells, but a tie only shows in the masks
+        return Symmetry.transformMask(t, tiedMask) == tiedMask;
+    }
+
+    public int getActiveBoard() {
+        return activeBoard;
+    }
+
+    public int getCurrentPlayer() {
+        return currentPlayer;
+    }
+
+    public int getWinner() {
+        return winner;
+    }
+
+    public boolean isGameOver() {
+        return winner != NO_WINNER;
+    }
+
+    public int getPly() {
+        return ply;
+    }
+
+    /**
+     * @return the number of stones on the board, which unlike the ply also counts moves made before fromState
+     */
+    public int getStoneCount() {
+        int count = 0;
+        for (int b = 0; b < 9; b++)
+            count += Integer.bitCount(masks[0][b] | masks[1][b]);
+        return count;
+    }
+
+    /**
+     * @return a Zobrist hash of the stones, the active micro-board and the player to move
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    public static IMove toMove(int cell) {
+        return new Move(cell / 9, cell % 9);
+    }
+
+    public static int toCell(IMove move) {
+        return move.getX() * 9 + move.getY();
+    }
+}
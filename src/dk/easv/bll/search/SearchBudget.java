@@ -0,0 +1,61 @@
+package dk.easv.bll.search;
+
+/**
+ * How long a bot searches for a move: until the clock runs out, or for a fixed
+ * number of nodes. For Monte Carlo bots a node is a playout.
+ *
+ * A node budget makes a bot play at the same strength however loaded the machine
+ * is, and together with a fixed seed it makes games reproducible.
+ */
+public final class SearchBudget {
+
+    private static final SearchBudget TIME = new SearchBudget(0);
+
+    private final long nodes;
+
+    private SearchBudget(long nodes) {
+        this.nodes = nodes;
+    }
+
+    /**
+     * Search until the time for the move is used up. This is the default.
+     */
+    public static SearchBudget time() {
+        return TIME;
+    }
+
+    /**
+     * Search a fixed number of nodes, whatever the time.
+     */
+    public static SearchBudget nodes(long nodes) {
+        if (nodes <= 0)
+            throw new IllegalArgumentException("A node budget must be positive, got " + nodes);
+        return new SearchBudget(nodes);
+    }
+
+    public boolean isTimed() {
+        return nodes == 0;
+    }
+
+    /**
+     * @return the number of nodes per move, or 0 for a timed search
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof SearchBudget && ((SearchBudget) other).nodes == nodes;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(nodes);
+    }
+
+    @Override
+    public String toString() {
+        return isTimed() ? "Time per move" : String.format("%,d nodes", nodes);
+    }
+}
@@ -0,0 +1,150 @@
+package dk.easv.bll.search;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Collects the SearchReport of every bot move, totalled per bot name.
+ * The game manager records the reports, so moves from the GUI, simulations and
+ * headless runs all end up here. Any number of games may record at once.
+ * The monitor registers itself as an MXBean the first time it is used.
+ */
+public final class SearchMonitor implements SearchMonitorMXBean {
+
+    public static final String OBJECT_NAME = "dk.easv.uttt:type=SearchMonitor";
+
+    private static final SearchMonitor INSTANCE = register(new SearchMonitor());
+
+    private final Totals all = new Totals();
+    private final Map<String, Totals> bots = new ConcurrentHashMap<>();
+    // Formatted only when it is read, which is far less often than a move is made
+    private volatile LastReport lastReport;
+
+    private SearchMonitor() {
+    }
+
+    public static SearchMonitor get() {
+        return INSTANCE;
+    }
+
+    private static SearchMonitor register(SearchMonitor monitor) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(monitor, new ObjectName(OBJECT_NAME));
+        }
+        catch (JMException | SecurityException ex) {
+            Logger.getLogger(SearchMonitor.class.getName()).log(Level.WARNING, "Search statistics are not available through JMX", ex);
+        }
+        return monitor;
+    }
+
+    public void record(String botName, SearchReport report) {
+        all.add(report);
+        bots.computeIfAbsent(botName, name -> new Totals()).add(report);
+        lastReport = new LastReport(botName, report);
+    }
+
+    /**
+     * @return the totals of one bot, or an empty string if it has not reported any moves
+     */
+    public String summary(String botName) {
+        Totals totals = bots.get(botName);
+        return totals == null ? "" : botName + ": " + totals;
+    }
+
+    @Override
+    public long getMovesReported() {
+        return all.moves.sum();
+    }
+
+    @Override
+    public long getTotalNodes() {
+        return all.nodes.sum();
+    }
+
+    @Override
+    public long getTotalPlayouts() {
+        return all.playouts.sum();
+    }
+
+    @Override
+    public double getNodesPerSecond() {
+        return all.nodesPerSecond();
+    }
+
+    @Override
+    public String getLastReport() {
+        LastReport last = lastReport;
+        return last == null ? "" : last.botName + ": " + last.report;
+    }
+
+    @Override
+    public String[] getBotSummaries() {
+        return bots.entrySet().stream()
+                .map(entry -> entry.getKey() + ": " + entry.getValue())
+                .sorted()
+                .toArray(String[]::new);
+    }
+
+    @Override
+    public void reset() {
+        all.reset();
+        bots.clear();
+        lastReport = null;
+    }
+
+    private static final class LastReport {
+        final String botName;
+        final SearchReport report;
+
+        LastReport(String botName, SearchReport report) {
+            this.botName = botName;
+            this.report = report;
+        }
+    }
+
+    private static final class Totals {
+        final LongAdder moves = new LongAdder();
+        final LongAdder nodes = new LongAdder();
+        final LongAdder playouts = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final LongAdder depth = new LongAdder();
+        final LongAdder bestMoveChanges = new LongAdder();
+
+        void add(SearchReport report) {
+            moves.increment();
+            nodes.add(report.getNodes());
+            playouts.add(report.getPlayouts());
+            nanos.add(report.getElapsedNanos());
+            depth.add(report.getDepth());
+            bestMoveChanges.add(report.getBestMoveChanges());
+        }
+
+        void reset() {
+            moves.reset();
+            nodes.reset();
+            playouts.reset();
+            nanos.reset();
+            depth.reset();
+            bestMoveChanges.reset();
+        }
+
+        double nodesPerSecond() {
+            long elapsed = nanos.sum();
+            return elapsed == 0 ? 0 : nodes.sum() * 1e9 / elapsed;
+        }
+
+        @Override
+        public String toString() {
+            long count = Math.max(1, moves.sum());
+            return String.format("%,d moves, %,.0f nodes/s, %,d playouts/move, depth %.1f, %.1f best move changes/move",
+                    moves.sum(), nodesPerSecond(), playouts.sum() / count,
+                    (double) depth.sum() / count, (double) bestMoveChanges.sum() / count);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package dk.easv.bll.search;
+
+/**
+ * The search statistics of every bot move played in this JVM, as seen through
+ * JMX (e.g. in JConsole under dk.easv.uttt).
+ */
+public interface SearchMonitorMXBean {
+
+    long getMovesReported();
+
+    long getTotalNodes();
+
+    long getTotalPlayouts();
+
+    /**
+     * @return nodes per second over all reported moves together
+     */
+    double getNodesPerSecond();
+
+    /**
+     * @return the bot and report of the last move
+     */
+    String getLastReport();
+
+    /**
+     * @return one line of totals per bot
+     */
+    String[] getBotSummaries();
+
+    void reset();
+}
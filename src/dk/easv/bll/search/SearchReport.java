@@ -0,0 +1,104 @@
+package dk.easv.bll.search;
+
+/**
+ * What a bot's search did for one move, as collected by SearchStats.
+ * Nodes are whatever the search counts as a node: positions visited by an
+ * alpha-beta or proof-number search, tree nodes walked through by Monte Carlo.
+ */
+public final class SearchReport {
+
+    public static final SearchReport EMPTY = new SearchReport(0, 0, 0, 0, 0, 0, 0, 0);
+
+    private final long nodes;
+    private final long playouts;
+    private final int depth;
+    private final long ttProbes;
+    private final long ttHits;
+    private final long elapsedNanos;
+    private final long budgetMillis;
+    private final int bestMoveChanges;
+
+    public SearchReport(long nodes, long playouts, int depth, long ttProbes, long ttHits,
+                        long elapsedNanos, long budgetMillis, int bestMoveChanges) {
+        this.nodes = nodes;
+        this.playouts = playouts;
+        this.depth = depth;
+        this.ttProbes = ttProbes;
+        this.ttHits = ttHits;
+        this.elapsedNanos = elapsedNanos;
+        this.budgetMillis = budgetMillis;
+        this.bestMoveChanges = bestMoveChanges;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getPlayouts() {
+        return playouts;
+    }
+
+    /**
+     * @return the deepest ply below the root the search reached
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getTtProbes() {
+        return ttProbes;
+    }
+
+    public long getTtHits() {
+        return ttHits;
+    }
+
+    /**
+     * @return the share of transposition table probes that hit, 0 if there were none
+     */
+    public double getTtHitRate() {
+        return ttProbes == 0 ? 0 : (double) ttHits / ttProbes;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getElapsedMillis() {
+        return elapsedNanos / 1e6;
+    }
+
+    /**
+     * @return the time the bot was given for the move, or 0 for a node budget
+     */
+    public long getBudgetMillis() {
+        return budgetMillis;
+    }
+
+    /**
+     * @return how often the best move changed while searching, low is stable
+     */
+    public int getBestMoveChanges() {
+        return bestMoveChanges;
+    }
+
+    public double getNodesPerSecond() {
+        return elapsedNanos == 0 ? 0 : nodes * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%,d nodes", nodes));
+        if (playouts > 0)
+            sb.append(String.format(", %,d playouts", playouts));
+        sb.append(String.format(", %,.0f nodes/s, depth %d", getNodesPerSecond(), depth));
+        if (ttProbes > 0)
+            sb.append(String.format(", TT %.0f%% of %,d", getTtHitRate() * 100, ttProbes));
+        sb.append(String.format(", %.1f ms", getElapsedMillis()));
+        if (budgetMillis > 0)
+            sb.append(String.format(" of %d ms", budgetMillis));
+        sb.append(", best move changed ").append(bestMoveChanges).append('x');
+        return sb.toString();
+    }
+}
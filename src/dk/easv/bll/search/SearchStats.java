@@ -0,0 +1,76 @@
+package dk.easv.bll.search;
+
+/**
+ * Counters a search updates while it runs, turned into a SearchReport when the
+ * move is decided. Everything is a plain field so the counting costs next to
+ * nothing; a searcher running on several threads counts per thread and adds the
+ * totals at the end.
+ */
+public final class SearchStats {
+
+    private long startNanos;
+    private long budgetMillis;
+    private long nodes;
+    private long playouts;
+    private int depth;
+    private long ttProbes;
+    private long ttHits;
+    private int bestMove = -1;
+    private int bestMoveChanges;
+
+    /**
+     * Clears the counters and starts the clock for a new move.
+     */
+    public void start() {
+        startNanos = System.nanoTime();
+        budgetMillis = 0;
+        nodes = 0;
+        playouts = 0;
+        depth = 0;
+        ttProbes = 0;
+        ttHits = 0;
+        bestMove = -1;
+        bestMoveChanges = 0;
+    }
+
+    /**
+     * @param budgetMillis the time the bot was given for the move, 0 for a node budget
+     */
+    public void setBudgetMillis(long budgetMillis) {
+        this.budgetMillis = budgetMillis;
+    }
+
+    public void addNodes(long count) {
+        nodes += count;
+    }
+
+    public void addPlayouts(long count) {
+        playouts += count;
+    }
+
+    public void reachedDepth(int depth) {
+        if (depth > this.depth)
+            this.depth = depth;
+    }
+
+    public void addProbes(long probes, long hits) {
+        ttProbes += probes;
+        ttHits += hits;
+    }
+
+    /**
+     * Called whenever the search has a (new) best move, to measure its stability.
+     */
+    public void bestMove(int cell) {
+        if (cell == bestMove)
+            return;
+        if (bestMove >= 0)
+            bestMoveChanges++;
+        bestMove = cell;
+    }
+
+    public SearchReport finish() {
+        return new SearchReport(nodes, playouts, depth, ttProbes, ttHits,
+                System.nanoTime() - startNanos, budgetMillis, bestMoveChanges);
+    }
+}
@@ -0,0 +1,212 @@
+package dk.easv.bll.search;
+
+/**
+ * Table based evaluation of a position.
+ * Every possible micro-board (3^9 of them) is scored once up front, so scoring a
+ * micro-board is a single lookup. The running score is updated incrementally:
+ * a move only rescores the micro-board it was played in, plus the macro lines
+ * when that micro-board got won or filled. Undo just pops the old values.
+ */
+public class TableEvaluator implements IEvaluator {
+
+    // Indexes into the weights array
+    public static final int MICRO_ONE = 0;      // a micro line with one of our marks and none of theirs
+    public static final int MICRO_TWO = 1;      // a micro line with two of our marks and none of theirs
+    public static final int CELL_CENTER = 2;
+    public static final int CELL_CORNER = 3;
+    public static final int CELL_EDGE = 4;
+    public static final int MACRO_CENTER = 5;   // a won micro-board in the middle of the macroboard
+    public static final int MACRO_CORNER = 6;
+    public static final int MACRO_EDGE = 7;
+    public static final int MACRO_ONE = 8;      // a macro line with one won board and nothing blocking it
+    public static final int MACRO_TWO = 9;      // a macro line with two won boards and nothing blocking it
+    public static final int WEIGHT_COUNT = 10;
+
+    public static final int[] DEFAULT_WEIGHTS = {2, 8, 3, 2, 1, 60, 45, 35, 10, 80};
+
+    // The names used for the weights in a weights file
+    public static final String[] WEIGHT_NAMES = {
+            "MICRO_ONE", "MICRO_TWO", "CELL_CENTER", "CELL_CORNER", "CELL_EDGE",
+            "MACRO_CENTER", "MACRO_CORNER", "MACRO_EDGE", "MACRO_ONE", "MACRO_TWO"};
+
+    // Maps a 9 bit mask to the base 3 digits of the same cells, so index = BASE3[m0] + 2 * BASE3[m1]
+    private static final int[] BASE3 = new int[512];
+
+    static {
+        for (int mask = 0; mask < 512; mask++) {
+            int value = 0;
+            int power = 1;
+            for (int i = 0; i < 9; i++) {
+                if ((mask & (1 << i)) != 0)
+                    value += power;
+                power *= 3;
+            }
+            BASE3[mask] = value;
+        }
+    }
+
+    private final int[] weights;
+    private final int[] microTable = new int[19683];
+    private final int[] squareWeight = new int[9];
+
+    private SearchBoard board;
+    private final int[] contribution = new int[9];
+    private int macroScore;
+    private int score;
+
+    // Undo stacks, one entry per ply
+    private final int[] scoreStack = new int[82];
+    private final int[] contributionStack = new int[82];
+    private final int[] macroStack = new int[82];
+    private int top;
+
+    /**
+     * Creates an evaluator with the startup weights: tuned ones from a weights
+     * file if there is one, see WeightsFile, otherwise the defaults.
+     */
+    public TableEvaluator() {
+        this(WeightsFile.startupWeights());
+    }
+
+    public TableEvaluator(int[] weights) {
+        if (weights.length != WEIGHT_COUNT)
+            throw new IllegalArgumentException("Expected " + WEIGHT_COUNT + " weights, got " + weights.length);
+        this.weights = weights.clone();
+        for (int i = 0; i < 9; i++)
+            squareWeight[i] = i == 4 ? 0 : (i % 2 == 0 ? 1 : 2); // 0 = center, 1 = corner, 2 = edge
+        buildMicroTable();
+    }
+
+    private void buildMicroTable() {
+        int[] cellWeights = {weights[CELL_CENTER], weights[CELL_CORNER], weights[CELL_EDGE]};
+        for (int m0 = 0; m0 < 512; m0++)
+            for (int m1 = 0; m1 < 512; m1++) {
+                if ((m0 & m1) != 0)
+                    continue;
+                int value = 0;
+                for (int line : SearchBoard.LINES) {
+                    int own = Integer.bitCount(line & m0);
+                    int theirs = Integer.bitCount(line & m1);
+                    if (theirs == 0)
+                        value += own == 2 ? weights[MICRO_TWO] : own == 1 ? weights[MICRO_ONE] : 0;
+                    else if (own == 0)
+                        value -= theirs == 2 ? weights[MICRO_TWO] : theirs == 1 ? weights[MICRO_ONE] : 0;
+                }
+                for (int i = 0; i < 9; i++) {
+                    if ((m0 & (1 << i)) != 0) value += cellWeights[squareWeight[i]];
+                    if ((m1 & (1 << i)) != 0) value -= cellWeights[squareWeight[i]];
+                }
+                microTable[BASE3[m0] + 2 * BASE3[m1]] = value;
+            }
+    }
+
+    public int[] getWeights() {
+        return weights.clone();
+    }
+
+    /**
+     * Scores a single open micro-board from player 0's point of view.
+     */
+    public int scoreMicro(int mask0, int mask1) {
+        return microTable[BASE3[mask0] + 2 * BASE3[mask1]];
+    }
+
+    /**
+     * A cheap prior for a move, seen from the player making it: the gain in its
+     * micro-board score, a bonus for winning the micro-board and a penalty for
+     * giving the opponent a free choice of board. The board is not changed.
+     */
+    public int scoreMove(SearchBoard board, int cell) {
+        int player = board.getCurrentPlayer();
+        int b = SearchBoard.CELL_BOARD[cell];
+        int local = SearchBoard.CELL_LOCAL[cell];
+        int own = board.getMask(player, b);
+        int theirs = board.getMask(1 - player, b);
+        int placed = own | (1 << local);
+
+        int before = player == 0 ? scoreMicro(own, theirs) : scoreMicro(theirs, own);
+        int after = player == 0 ? scoreMicro(placed, theirs) : scoreMicro(theirs, placed);
+        int value = player == 0 ? after - before : before - after;
+
+        boolean closesBoard = SearchBoard.WINNING_MASK[placed] || (placed | theirs) == SearchBoard.FULL_MASK;
+        if (SearchBoard.WINNING_MASK[placed])
+            value += weights[MACRO_CENTER + squareWeight[b]];
+        if (board.getStatus(local) != SearchBoard.OPEN || (closesBoard && local == b))
+            value -= weights[MICRO_TWO];
+        return value;
+    }
+
+    @Override
+    public void reset(SearchBoard board) {
+        this.board = board;
+        top = 0;
+        score = 0;
+        for (int b = 0; b < 9; b++) {
+            contribution[b] = microContribution(b);
+            score += contribution[b];
+        }
+        macroScore = computeMacroScore();
+        score += macroScore;
+    }
+
+    @Override
+    public void onMake(SearchBoard board, int cell, boolean closed) {
+        int b = SearchBoard.CELL_BOARD[cell];
+        scoreStack[top] = score;
+        contributionStack[top] = contribution[b];
+        macroStack[top] = macroScore;
+        top++;
+
+        int newContribution = microContribution(b);
+        score += newContribution - contribution[b];
+        contribution[b] = newContribution;
+        if (closed) {
+            int newMacro = computeMacroScore();
+            score += newMacro - macroScore;
+            macroScore = newMacro;
+        }
+    }
+
+    @Override
+    public void onUnmake(SearchBoard board, int cell, boolean closed) {
+        top--;
+        score = scoreStack[top];
+        contribution[SearchBoard.CELL_BOARD[cell]] = contributionStack[top];
+        macroScore = macroStack[top];
+    }
+
+    @Override
+    public int evaluate() {
+        return score;
+    }
+
+    private int microContribution(int b) {
+        if (board.getStatus(b) != SearchBoard.OPEN)
+            return 0;
+        return scoreMicro(board.getMask(0, b), board.getMask(1, b));
+    }
+
+    private int computeMacroScore() {
+        int won0 = board.getMacroMask(0);
+        int won1 = board.getMacroMask(1);
+        int tied = board.getTiedMask();
+        int[] boardWeights = {weights[MACRO_CENTER], weights[MACRO_CORNER], weights[MACRO_EDGE]};
+
+        int value = 0;
+        for (int b = 0; b < 9; b++) {
+            if ((won0 & (1 << b)) != 0) value += boardWeights[squareWeight[b]];
+            if ((won1 & (1 << b)) != 0) value -= boardWeights[squareWeight[b]];
+        }
+        for (int line : SearchBoard.LINES) {
+            int own = Integer.bitCount(line & won0);
+            int theirs = Integer.bitCount(line & won1);
+            if ((line & tied) != 0)
+                continue;
+            if (theirs == 0)
+                value += own == 2 ? weights[MACRO_TWO] : own == 1 ? weights[MACRO_ONE] : 0;
+            else if (own == 0)
+                value -= theirs == 2 ? weights[MACRO_TWO] : theirs == 1 ? weights[MACRO_ONE] : 0;
+        }
+        return value;
+    }
+}
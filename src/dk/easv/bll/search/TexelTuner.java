@@ -0,0 +1,283 @@
+package dk.easv.bll.search;
+
+import dk.easv.bll.game.GameSeeds;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Headless tuning of the TableEvaluator weights, Texel style: the weights are
+ * fitted so that sigmoid(K * evaluation) predicts the results of self-play games.
+ *
+ *   TexelTuner generate corpus.bin games [playouts]
+ *     Plays games on all cores and streams them to the corpus file. Moves come
+ *     from the pattern playout policy, or from an MCTS search of the given number
+ *     of playouts per move for better labels at a higher cost.
+ *
+ *   TexelTuner tune corpus.bin evaluator.weights
+ *     Streams the corpus, fits the weights by local search and writes them to a
+ *     weights file, which the bots then load at startup (see WeightsFile).
+ *
+ * The evaluation is linear in the weights, so each position is reduced once to
+ * its feature counts (its score under each unit weight). After that, trying a
+ * set of weights is a dot product per position, spread over all cores.
+ */
+public class TexelTuner {
+
+    static final int SKIPPED_OPENING_PLIES = 4;  // too early to say anything about the result
+    private static final double RANDOM_MOVE_CHANCE = 0.1; // keeps self-play games varied
+    private static final int CHUNK = 1 << 14;
+    private static final int[] STEPS = {8, 4, 2, 1};
+
+    private final int positions;
+    private final short[] features;    // WEIGHT_COUNT per position
+    private final float[] results;     // result for player 0
+    private double scale;
+
+    private TexelTuner(short[] features, float[] results, int positions) {
+        this.features = features;
+        this.results = results;
+        this.positions = positions;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 3 && args[0].equals("generate")) {
+            int playouts = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+            generate(Paths.get(args[1]), Long.parseLong(args[2]), playouts, GameSeeds.masterSeed());
+        }
+        else if (args.length >= 3 && args[0].equals("tune")) {
+            tune(Paths.get(args[1]), Paths.get(args[2]));
+        }
+        else {
+            System.err.println("Usage: TexelTuner generate <corpus> <games> [playouts per move]");
+            System.err.println("       TexelTuner tune <corpus> <weights file>");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Plays the given number of self-play games on all cores and appends them to the corpus.
+     * Every game is stored as its number of plies, the cells played and the winner.
+     */
+    public static void generate(Path corpus, long games, int playouts, long seed) throws IOException {
+        SplittableRandom master = new SplittableRandom(seed);
+        int threads = Runtime.getRuntime().availableProcessors();
+        SplittableRandom[] randoms = new SplittableRandom[threads];
+        for (int i = 0; i < threads; i++)
+            randoms[i] = master.split();
+        AtomicLong next = new AtomicLong();
+        long start = System.currentTimeMillis();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(corpus), 1 << 16))) {
+            IntStream.range(0, threads).parallel().forEach(thread -> {
+                SplittableRandom random = randoms[thread];
+                SelfPlay player = new SelfPlay(playouts, random);
+                byte[] record = new byte[83];
+                while (next.getAndIncrement() < games) {
+                    int length = player.play(record);
+                    synchronized (out) {
+                        try {
+                            out.write(record, 0, length);
+                        }
+                        catch (IOException ex) {
+                            throw new IllegalStateException(ex);
+                        }
+                    }
+                }
+            });
+        }
+        System.out.printf("Wrote %,d games to %s in %.1fs%n", games, corpus, (System.currentTimeMillis() - start) / 1000.0);
+    }
+
+    /**
+     * Fits the weights to the corpus and writes them to the weights file.
+     */
+    public static void tune(Path corpus, Path weightsFile) throws IOException {
+        TexelTuner tuner = load(corpus);
+        int[] weights = TableEvaluator.DEFAULT_WEIGHTS.clone();
+
+        tuner.scale = tuner.fitScale(weights);
+        double initial = tuner.error(weights);
+        System.out.printf("%,d positions, K = %.6f, error with default weights %.6f%n", tuner.positions, tuner.scale, initial);
+
+        double best = tuner.localSearch(weights, initial);
+        System.out.printf("Tuned error %.6f, weights %s%n", best, Arrays.toString(weights));
+
+        WeightsFile.write(weightsFile, weights, String.format(
+                "Texel tuned on %,d positions from %s%nerror %.6f (defaults %.6f), K = %.6f",
+                tuner.positions, corpus.getFileName(), best, initial, tuner.scale));
+        System.out.println("Wrote " + weightsFile);
+    }
+
+    /**
+     * Streams the corpus and keeps only the feature counts and the result of each position.
+     */
+    private static TexelTuner load(Path corpus) throws IOException {
+        FeatureCollector collector = new FeatureCollector();
+        GameCorpus.forEachPosition(corpus, SKIPPED_OPENING_PLIES, collector);
+        return new TexelTuner(collector.features, collector.results, collector.count);
+    }
+
+    /**
+     * Mean squared difference between results and predictions, summed per chunk
+     * on all cores. Chunks are added up in order, so the error is the same on every run.
+     */
+    private double error(int[] weights) {
+        int chunks = (positions + CHUNK - 1) / CHUNK;
+        double[] sums = new double[chunks];
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            double sum = 0;
+            int end = Math.min(positions, (chunk + 1) * CHUNK);
+            for (int p = chunk * CHUNK; p < end; p++) {
+                int base = p * TableEvaluator.WEIGHT_COUNT;
+                long score = 0;
+                for (int i = 0; i < TableEvaluator.WEIGHT_COUNT; i++)
+                    score += (long) weights[i] * features[base + i];
+                double predicted = 1.0 / (1.0 + Math.exp(-scale * score));
+                double diff = results[p] - predicted;
+                sum += diff * diff;
+            }
+            sums[chunk] = sum;
+        });
+        double total = 0;
+        for (double sum : sums)
+            total += sum;
+        return total / Math.max(1, positions);
+    }
+
+    // The scale that fits the default weights best, found by narrowing in on a log scale
+    private double fitScale(int[] weights) {
+        double low = Math.log(1e-5);
+        double high = Math.log(1.0);
+        for (int round = 0; round < 40; round++) {
+            double a = low + (high - low) / 3;
+            double b = high - (high - low) / 3;
+            scale = Math.exp(a);
+            double errorA = error(weights);
+            scale = Math.exp(b);
+            double errorB = error(weights);
+            if (errorA < errorB)
+                high = b;
+            else
+                low = a;
+        }
+        return Math.exp((low + high) / 2);
+    }
+
+    /**
+     * Moves one weight at a time up or down, and keeps going in that direction
+     * while the error drops, with smaller and smaller steps.
+     * @return the final error, the weights are changed in place
+     */
+    private double localSearch(int[] weights, double error) {
+        for (int step : STEPS) {
+            boolean improved = true;
+            while (improved) {
+                improved = false;
+                for (int i = 0; i < weights.length; i++) {
+                    for (int direction : new int[]{step, -step}) {
+                        boolean moved = false;
+                        while (true) {
+                            weights[i] += direction;
+                            double candidate = error(weights);
+                            if (candidate >= error) {
+                                weights[i] -= direction;
+                                break;
+                            }
+                            error = candidate;
+                            moved = true;
+                        }
+                        if (moved) {
+                            improved = true;
+                            System.out.printf("  %s = %d, error %.6f%n", TableEvaluator.WEIGHT_NAMES[i], weights[i], error);
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        return error;
+    }
+
+    /**
+     * Reduces each position to its score under each unit weight.
+     */
+    private static final class FeatureCollector implements GameCorpus.PositionVisitor {
+        private final TableEvaluator[] units = new TableEvaluator[TableEvaluator.WEIGHT_COUNT];
+        private short[] features = new short[1 << 20];
+        private float[] results = new float[features.length / TableEvaluator.WEIGHT_COUNT];
+        private int count;
+
+        FeatureCollector() {
+            for (int i = 0; i < units.length; i++) {
+                int[] unit = new int[TableEvaluator.WEIGHT_COUNT];
+                unit[i] = 1;
+                units[i] = new TableEvaluator(unit);
+            }
+        }
+
+        @Override
+        public void visit(SearchBoard board, float result) {
+            if (count == results.length) {
+                results = Arrays.copyOf(results, count * 2);
+                features = Arrays.copyOf(features, count * 2 * TableEvaluator.WEIGHT_COUNT);
+            }
+            for (int i = 0; i < units.length; i++) {
+                units[i].reset(board);
+                features[count * TableEvaluator.WEIGHT_COUNT + i] = (short) units[i].evaluate();
+            }
+            results[count++] = result;
+        }
+    }
+
+    /**
+     * Plays one self-play game at a time.
+     */
+    private static final class SelfPlay {
+        private final int playouts;
+        private final SplittableRandom random;
+        private final PatternPolicy policy = new PatternPolicy();
+        private final MctsSearch search;
+        private final int[] moves = new int[81];
+
+        SelfPlay(int playouts, SplittableRandom random) {
+            this.playouts = playouts;
+            this.random = random;
+            this.search = playouts > 0 ? new MctsSearch(new HeapNodeArena(playouts + 16), random) : null;
+        }
+
+        /**
+         * @return the length of the record written: plies, the cells, the winner
+         */
+        int play(byte[] record) {
+            SearchBoard board = new SearchBoard();
+            while (!board.isGameOver()) {
+                int count = board.getMoves(moves);
+                int cell;
+                if (random.nextDouble() < RANDOM_MOVE_CHANCE)
+                    cell = moves[random.nextInt(count)];
+                else if (search != null) {
+                    search.reset();
+                    cell = search.searchPlayouts(board, playouts);
+                }
+                else
+                    cell = policy.selectMove(board, moves, count, random);
+                board.makeMove(cell);
+                record[board.getPly()] = (byte) cell;
+            }
+            int plies = board.getPly();
+            record[0] = (byte) plies;
+            record[plies + 1] = (byte) board.getWinner();
+            return plies + 2;
+        }
+    }
+}
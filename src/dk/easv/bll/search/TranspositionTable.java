@@ -0,0 +1,74 @@
+package dk.easv.bll.search;
+
+import java.util.Arrays;
+
+/**
+ * A fixed size hash table from position hash to a 64 bit payload.
+ * The table can be shared between searchers and threads: each slot stores
+ * key ^ data next to data, so a torn write is seen as a miss instead of a wrong hit.
+ * Searchers that store different kinds of data should salt their keys so they
+ * do not read each other's entries.
+ */
+public class TranspositionTable {
+
+    public static final long MISSING = Long.MIN_VALUE;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+    private long probes;   // running totals, read as differences around a search (approximate when shared)
+    private long hits;
+
+    /**
+     * @param sizeBits the table holds 2^sizeBits entries (16 bytes each)
+     */
+    public TranspositionTable(int sizeBits) {
+        int size = 1 << sizeBits;
+        keys = new long[size];
+        data = new long[size];
+        mask = size - 1;
+    }
+
+    /**
+     * @return the stored payload, or MISSING if the key is not in the table
+     */
+    public long probe(long key) {
+        int index = index(key);
+        long value = data[index];
+        probes++;
+        if ((keys[index] ^ value) != key)
+            return MISSING;
+        hits++;
+        return value;
+    }
+
+    /**
+     * Stores a payload, always replacing whatever was in the slot.
+     */
+    public void store(long key, long value) {
+        int index = index(key);
+        data[index] = value;
+        keys[index] = key ^ value;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(data, 0);
+    }
+
+    public long getProbes() {
+        return probes;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    private int index(long key) {
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+}
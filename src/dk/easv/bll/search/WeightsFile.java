@@ -0,0 +1,86 @@
+package dk.easv.bll.search;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reads and writes evaluation weights as a properties file, one NAME=value line
+ * per weight, using the names in TableEvaluator.WEIGHT_NAMES.
+ *
+ * The weights the bots start with come from the file named by the uttt.weights
+ * system property, or evaluator.weights in the working directory. Without either
+ * the built in defaults are used.
+ */
+public final class WeightsFile {
+
+    public static final String DEFAULT_FILE = "evaluator.weights";
+
+    private static volatile int[] startupWeights;
+
+    private WeightsFile() {
+    }
+
+    public static int[] read(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        int[] weights = TableEvaluator.DEFAULT_WEIGHTS.clone();
+        for (int i = 0; i < TableEvaluator.WEIGHT_COUNT; i++) {
+            String value = properties.getProperty(TableEvaluator.WEIGHT_NAMES[i]);
+            if (value == null)
+                continue;
+            try {
+                weights[i] = Integer.parseInt(value.trim());
+            }
+            catch (NumberFormatException ex) {
+                throw new IOException("Bad value for " + TableEvaluator.WEIGHT_NAMES[i] + " in " + file + ": " + value, ex);
+            }
+        }
+        return weights;
+    }
+
+    public static void write(Path file, int[] weights, String comment) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            if (comment != null)
+                for (String line : comment.split("\n"))
+                    writer.write("# " + line + "\n");
+            for (int i = 0; i < TableEvaluator.WEIGHT_COUNT; i++)
+                writer.write(TableEvaluator.WEIGHT_NAMES[i] + "=" + weights[i] + "\n");
+        }
+    }
+
+    /**
+     * The weights to start with, read once. A missing file means the defaults,
+     * an unreadable one is logged and also falls back to the defaults.
+     */
+    public static int[] startupWeights() {
+        int[] weights = startupWeights;
+        if (weights == null) {
+            weights = loadStartupWeights();
+            startupWeights = weights;
+        }
+        return weights.clone();
+    }
+
+    private static int[] loadStartupWeights() {
+        Path file = Paths.get(System.getProperty("uttt.weights", DEFAULT_FILE));
+        if (!Files.isRegularFile(file))
+            return TableEvaluator.DEFAULT_WEIGHTS.clone();
+        try {
+            return read(file);
+        }
+        catch (IOException ex) {
+            Logger.getLogger(WeightsFile.class.getName()).log(Level.WARNING, "Using default evaluation weights", ex);
+            return TableEvaluator.DEFAULT_WEIGHTS.clone();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package dk.easv.dal;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dk.easv.bll.bot.IBot;
+import dk.easv.bll.game.GameState;
+import dk.easv.bll.move.IMove;
+import dk.easv.bll.move.Move;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+/**
+ * A stand-in for the server behind TeacherBotREST, for testing remote play
+ * without the VPN:
+ *
+ *   BotServer [bot] [port] [latency ms]
+ *
+ * It answers PUT /doMove with the move of a local bot (MctsBot by default), after
+ * waiting the given latency to act like a slow network. Every request thread has a
+ * bot of its own. Point the client at it with
+ * -Duttt.teacherbot.uri=http://localhost:4567/doMove
+ */
+public class BotServer {
+
+    private static final String BOT_PACKAGE = "dk.easv.bll.bot.";
+    private static final Gson GSON = new Gson();
+
+    private final Class<? extends IBot> botClass;
+    private final long latencyMillis;
+    private final ThreadLocal<IBot> bots;
+
+    public BotServer(Class<? extends IBot> botClass, long latencyMillis) {
+        this.botClass = botClass;
+        this.latencyMillis = latencyMillis;
+        this.bots = ThreadLocal.withInitial(this::newBot);
+    }
+
+    public static void main(String[] args) throws IOException {
+        String bot = args.length > 0 ? args[0] : "MctsBot";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 4567;
+        long latency = args.length > 2 ? Long.parseLong(args[2]) : 0;
+        String className = bot.contains(".") ? bot : BOT_PACKAGE + bot;
+        Class<? extends IBot> botClass;
+        try {
+            botClass = Class.forName(className).asSubclass(IBot.class);
+        }
+        catch (ClassNotFoundException | ClassCastException ex) {
+            System.err.println("Not a bot: " + className);
+            System.err.println("Usage: BotServer [bot] [port] [latency ms]");
+            System.exit(1);
+            return;
+        }
+        new BotServer(botClass, latency).start(port);
+        System.out.println("Serving " + botClass.getSimpleName() + " on http://localhost:" + port + "/doMove");
+    }
+
+    /**
+     * Starts serving on the given port, on threads that do not keep the JVM alive
+     * on their own; the server's dispatcher thread does.
+     */
+    public HttpServer start(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/doMove", this::handle);
+        server.setExecutor(Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "uttt-bot-server");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+        return server;
+    }
+
+    private IBot newBot() {
+        try {
+            return botClass.getConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("Cannot create " + botClass.getName(), ex);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"PUT".equals(exchange.getRequestMethod()) && !"POST".equals(exchange.getRequestMethod())) {
+                reply(exchange, 405, "{\"error\":\"PUT a game state\"}");
+                return;
+            }
+            String body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            GameState state;
+            try {
+                state = parseState(body);
+            }
+            catch (RuntimeException ex) {
+                reply(exchange, 400, "{\"error\":\"Not a game state\"}");
+                return;
+            }
+            if (latencyMillis > 0)
+                Thread.sleep(latencyMillis);
+            IMove move = bots.get().doMove(state);
+            reply(exchange, 200, GSON.toJson(new Move(move.getX(), move.getY())));
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            reply(exchange, 503, "{\"error\":\"Shutting down\"}");
+        }
+        catch (RuntimeException ex) {
+            reply(exchange, 500, "{\"error\":\"The bot failed\"}");
+        }
+        finally {
+            exchange.close();
+        }
+    }
+
+    // The client sends GameState as Gson wrote it, with the Field's arrays inside
+    private static GameState parseState(String json) {
+        JsonObject root = GSON.fromJson(json, JsonObject.class);
+        JsonObject field = root.getAsJsonObject("field");
+        GameState state = new GameState();
+        state.getField().setBoard(GSON.fromJson(field.get("board"), String[][].class));
+        state.getField().setMacroboard(GSON.fromJson(field.get("macroBoard"), String[][].class));
+        state.setMoveNumber(root.get("moveNumber").getAsInt());
+        state.setRoundNumber(root.get("roundNumber").getAsInt());
+        state.setTimePerMove(root.get("timePerMove").getAsInt());
+        return state;
+    }
+
+    private static void reply(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
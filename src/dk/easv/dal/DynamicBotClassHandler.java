@@ -8,6 +8,7 @@ package dk.easv.dal;
 import dk.easv.bll.bot.IBot;
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.Modifier;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.file.*;
@@ -29,6 +30,25 @@ public class DynamicBotClassHandler {
         return fileName;
     }
     
+    /**
+     * Only concrete, public IBot classes with a public no-argument constructor can be
+     * instantiated by the loader. Interfaces, helpers and adapters that live in the
+     * bot package are skipped.
+     */
+    private static boolean isLoadableBot(Class<?> clazz) {
+        if (!IBot.class.isAssignableFrom(clazz))
+            return false;
+        int modifiers = clazz.getModifiers();
+        if (clazz.isInterface() || Modifier.isAbstract(modifiers) || !Modifier.isPublic(modifiers))
+            return false;
+        try {
+            return Modifier.isPublic(clazz.getConstructor().getModifiers());
+        }
+        catch (NoSuchMethodException ex) {
+            return false;
+        }
+    }
+
     public static void writeBotsToTextFile() throws ClassNotFoundException, IOException, InstantiationException, IllegalAccessException {
         File file = new File("bots.txt");
         List<String> bots = new ArrayList<>();
@@ -42,7 +62,7 @@ public class DynamicBotClassHandler {
                 URL[] urls = {path.toFile().toURI().toURL()};
                 ClassLoader cl = new URLClassLoader(urls);
                 Class clazz = cl.loadClass(classPathAndName);
-                if (!clazz.isInterface()) {
+                if (isLoadableBot(clazz)) {
                     IBot bot = (IBot) clazz.newInstance();
                     bots.add(bot.getBotName());
                 }
@@ -65,7 +85,7 @@ public class DynamicBotClassHandler {
                 URL[] urls = {path.toFile().toURI().toURL()};
                 ClassLoader cl = new URLClassLoader(urls);
                 Class clazz = cl.loadClass(classPathAndName);
-                if (!clazz.isInterface()) {
+                if (isLoadableBot(clazz)) {
                     IBot bot = (IBot) clazz.newInstance();
                     bots.add(bot);
                 }
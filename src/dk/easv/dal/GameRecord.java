@@ -0,0 +1,166 @@
+package dk.easv.dal;
+
+import dk.easv.bll.game.GameManager;
+import dk.easv.bll.game.GameState;
+import dk.easv.bll.game.stats.GameResult;
+import dk.easv.bll.move.Move;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * One game of a game record file, read in place from the file's bytes.
+ *
+ * The file starts with a 16 byte header (magic, version, 8 unused bytes) and is
+ * then a stream of entries, all little-endian:
+ *
+ *   bot   tag 1, id (u16), name length (u16), UTF-8 name
+ *   game  tag 2, length of the rest (u16), bot ids of player 0 and player 1 (u16 each),
+ *         master seed (long), game number (long), result (byte: winner ordinal, +4 for
+ *         a forfeit), moves (byte), one byte per move with its cell x*9+y, then the
+ *         think time of every ply in microseconds as a varint; a forfeit has one
+ *         ply more than it has moves
+ *
+ * A bot entry comes before the first game that uses its id. With the master seed
+ * and game number a game can be played again, see GameSeeds.
+ *
+ * The reader hands the same instance to every game, so it must not be kept.
+ */
+public final class GameRecord {
+
+    static final int MAGIC = 0x52475455;   // "UTGR"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final byte BOT = 1;
+    static final byte GAME = 2;
+    static final int FORFEIT = 4;
+    // Offsets in a game entry, from the byte after its length
+    static final int BOT0 = 0;
+    static final int BOT1 = 2;
+    static final int MASTER_SEED = 4;
+    static final int GAME_NUMBER = 12;
+    static final int RESULT = 20;
+    static final int MOVES = 21;
+    static final int CELLS = 22;
+
+    private static final GameResult.Winner[] WINNERS = GameResult.Winner.values();
+
+    private ByteBuffer buffer;
+    private int offset;
+    private List<String> names;
+
+    GameRecord() {
+    }
+
+    void set(ByteBuffer buffer, int offset, List<String> names) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.names = names;
+    }
+
+    public String getPlayer0() {
+        return names.get(Short.toUnsignedInt(buffer.getShort(offset + BOT0)));
+    }
+
+    public String getPlayer1() {
+        return names.get(Short.toUnsignedInt(buffer.getShort(offset + BOT1)));
+    }
+
+    public long getMasterSeed() {
+        return buffer.getLong(offset + MASTER_SEED);
+    }
+
+    public long getGameNumber() {
+        return buffer.getLong(offset + GAME_NUMBER);
+    }
+
+    public GameResult.Winner getWinner() {
+        return WINNERS[buffer.get(offset + RESULT) & ~FORFEIT];
+    }
+
+    /**
+     * @return true if the game was lost by an illegal move, which is not recorded, or
+     *         by running out of time
+     */
+    public boolean isForfeit() {
+        return (buffer.get(offset + RESULT) & FORFEIT) != 0;
+    }
+
+    public int getMoves() {
+        return Byte.toUnsignedInt(buffer.get(offset + MOVES));
+    }
+
+    /**
+     * @return the cell (x*9+y) played in the given ply
+     */
+    public int getCell(int ply) {
+        return buffer.get(offset + CELLS + ply);
+    }
+
+    /**
+     * @return the number of plies, including the last one of a forfeit
+     */
+    public int getPlies() {
+        return getMoves() + (isForfeit() ? 1 : 0);
+    }
+
+    /**
+     * Decodes the think times of all plies.
+     * @param micros at least getPlies() long
+     */
+    public void getThinkMicros(long[] micros) {
+        int position = offset + CELLS + getMoves();
+        for (int ply = 0; ply < getPlies(); ply++) {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(position++);
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            micros[ply] = value;
+        }
+    }
+
+    /**
+     * Plays the moves again through a GameManager.
+     * @return the winner the moves lead to
+     * @throws IllegalStateException if a move is illegal, or the game does not end
+     *         where the record does
+     */
+    public GameResult.Winner replay() {
+        GameState state = new GameState();
+        GameManager manager = new GameManager(state);
+        int moves = getMoves();
+        for (int ply = 0; ply < moves; ply++) {
+            if (manager.getGameOver() != GameManager.GameOverState.Active)
+                throw new IllegalStateException("Game " + getGameNumber() + " goes on after it ended, at ply " + ply);
+            int cell = getCell(ply);
+            if (!manager.updateGame(new Move(cell / 9, cell % 9)))
+                throw new IllegalStateException("Illegal move " + cell + " in game " + getGameNumber() + " at ply " + ply);
+        }
+        if (isForfeit()) {
+            if (manager.getGameOver() != GameManager.GameOverState.Active)
+                throw new IllegalStateException("Game " + getGameNumber() + " was forfeited after it ended");
+            return moves % 2 == 0 ? GameResult.Winner.player1 : GameResult.Winner.player0;
+        }
+        if (manager.getGameOver() == GameManager.GameOverState.Win)
+            return manager.getCurrentPlayer() == 1 ? GameResult.Winner.player0 : GameResult.Winner.player1;
+        if (manager.getGameOver() == GameManager.GameOverState.Tie || state.getField().getAvailableMoves().isEmpty())
+            return GameResult.Winner.tie;
+        throw new IllegalStateException("Game " + getGameNumber() + " ends before it is over");
+    }
+
+    /**
+     * @return true if replaying the moves gives the recorded result
+     */
+    public boolean verify() {
+        try {
+            return replay() == getWinner();
+        }
+        catch (IllegalStateException ex) {
+            return false;
+        }
+    }
+}
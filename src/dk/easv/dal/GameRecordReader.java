@@ -0,0 +1,129 @@
+package dk.easv.dal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a game record file written by GameRecordWriter through memory-mapped
+ * windows of the file, without copying the games:
+ *
+ *   GameRecordReader games.bin [--verify]
+ *
+ * prints the number of games and plies, and with --verify plays every
+ * game again through a GameManager and counts those whose moves do not lead to
+ * the recorded result. A game cut short at the end of the file is ignored.
+ */
+public final class GameRecordReader {
+
+    /**
+     * Receives the games of a file in order. The record is reused and must not be kept.
+     */
+    public interface GameVisitor {
+        void visit(GameRecord game);
+    }
+
+    private static final long WINDOW_BYTES = 1L << 30;
+
+    private GameRecordReader() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: GameRecordReader <game record file> [--verify]");
+            System.exit(1);
+        }
+        boolean verify = args.length > 1 && args[1].equals("--verify");
+        long[] mismatches = new long[1];
+        long[] plies = new long[1];
+        long start = System.nanoTime();
+        long games = forEachGame(Paths.get(args[0]), game -> {
+            plies[0] += game.getPlies();
+            if (verify && !game.verify())
+                mismatches[0]++;
+        });
+        System.out.printf("%,d games, %,d plies, read in %.1f ms%n", games, plies[0], (System.nanoTime() - start) / 1e6);
+        if (verify)
+            System.out.printf("%,d games do not replay to their recorded result%n", mismatches[0]);
+    }
+
+    /**
+     * Hands every complete game of the file to the visitor.
+     * @return the number of games
+     */
+    public static long forEachGame(Path file, GameVisitor visitor) throws IOException {
+        List<String> names = new ArrayList<>();
+        GameRecord record = new GameRecord();
+        long games = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            checkHeader(channel, file);
+            long windowStart = GameRecord.HEADER_BYTES;
+            while (windowStart < size) {
+                long windowBytes = Math.min(WINDOW_BYTES, size - windowStart);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowBytes);
+                window.order(ByteOrder.LITTLE_ENDIAN);
+                int position = 0;
+                while (true) {
+                    int length = entryLength(window, position);
+                    if (length < 0 || position + length > window.limit())
+                        break;
+                    if (window.get(position) == GameRecord.BOT) {
+                        byte[] bytes = new byte[length - 5];
+                        window.get(position + 5, bytes);
+                        names.add(new String(bytes, StandardCharsets.UTF_8));
+                    }
+                    else {
+                        record.set(window, position + 3, names);
+                        visitor.visit(record);
+                        games++;
+                    }
+                    position += length;
+                }
+                // The rest of the window is a piece of an entry, which the next window starts with
+                if (windowStart + windowBytes == size)
+                    break;
+                if (position == 0)
+                    throw new IOException(file + " has a broken entry at " + windowStart);
+                windowStart += position;
+            }
+        }
+        return games;
+    }
+
+    // The length of the whole entry, or -1 if not even its header is in the window
+    private static int entryLength(ByteBuffer window, int position) throws IOException {
+        if (position + 3 > window.limit())
+            return -1;
+        byte tag = window.get(position);
+        if (tag == GameRecord.GAME)
+            return 3 + Short.toUnsignedInt(window.getShort(position + 1));
+        if (tag == GameRecord.BOT) {
+            if (position + 5 > window.limit())
+                return -1;
+            return 5 + Short.toUnsignedInt(window.getShort(position + 3));
+        }
+        throw new IOException("Unknown entry " + tag + " in a game record file");
+    }
+
+    private static void checkHeader(FileChannel channel, Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(GameRecord.HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+            // Keep reading until the header is complete or the file ends
+        }
+        header.flip();
+        if (header.remaining() < GameRecord.HEADER_BYTES || header.getInt() != GameRecord.MAGIC)
+            throw new IOException(file + " is not a game record file");
+        int version = header.getInt();
+        if (version != GameRecord.VERSION)
+            throw new IOException(file + " has version " + version + ", expected " + GameRecord.VERSION);
+    }
+}
@@ -0,0 +1,109 @@
+package dk.easv.dal;
+
+import dk.easv.bll.game.GameOutcome;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Streams games to a new game record file, see GameRecord for the format.
+ * Simulation threads can write at the same time; every game is encoded and
+ * written in one piece, so the games end up in the order they finished.
+ */
+public class GameRecordWriter implements Closeable {
+
+    // The largest game entry: the fixed fields, 81 moves and 82 think times of 5 bytes
+    private static final int MAX_ENTRY_BYTES = 3 + GameRecord.CELLS + 81 + 82 * 5;
+
+    private final OutputStream out;
+    private final Map<String, Integer> botIds = new HashMap<>();
+    private final ByteBuffer entry = ByteBuffer.allocate(MAX_ENTRY_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private long games;
+
+    private GameRecordWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Creates the file, or empties it if it exists.
+     */
+    public static GameRecordWriter create(Path file) throws IOException {
+        GameRecordWriter writer = new GameRecordWriter(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+        ByteBuffer header = ByteBuffer.allocate(GameRecord.HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(GameRecord.MAGIC).putInt(GameRecord.VERSION);
+        writer.out.write(header.array());
+        return writer;
+    }
+
+    /**
+     * Writes a finished game, from any thread.
+     * @param player0 the name of the bot that moved first
+     * @param game the game's number in the run, for GameSeeds
+     */
+    public synchronized void write(String player0, String player1, long masterSeed, long game, GameOutcome outcome) {
+        try {
+            int bot0 = botId(player0);
+            int bot1 = botId(player1);
+            entry.clear();
+            entry.put(GameRecord.GAME).putShort((short) 0);
+            entry.putShort((short) bot0).putShort((short) bot1);
+            entry.putLong(masterSeed).putLong(game);
+            entry.put((byte) (outcome.getWinner().ordinal() | (outcome.isForfeit() ? GameRecord.FORFEIT : 0)));
+            entry.put((byte) outcome.getMoves());
+            for (int ply = 0; ply < outcome.getMoves(); ply++)
+                entry.put((byte) outcome.getCell(ply));
+            for (int ply = 0; ply < outcome.getPlies(); ply++) {
+                long micros = outcome.getMoveNanos(ply) / 1000;
+                while ((micros & ~0x7FL) != 0) {
+                    entry.put((byte) (micros & 0x7F | 0x80));
+                    micros >>>= 7;
+                }
+                entry.put((byte) micros);
+            }
+            entry.putShort(1, (short) (entry.position() - 3));
+            out.write(entry.array(), 0, entry.position());
+            games++;
+        }
+        catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * @return the number of games written
+     */
+    public synchronized long getGames() {
+        return games;
+    }
+
+    // A new name is written before the first game that uses it
+    private int botId(String name) throws IOException {
+        Integer id = botIds.get(name);
+        if (id != null)
+            return id;
+        if (botIds.size() > 0xFFFF)
+            throw new IOException("More than " + 0x10000 + " bots in one file");
+        id = botIds.size();
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, 0xFFFF);
+        ByteBuffer bot = ByteBuffer.allocate(5 + length).order(ByteOrder.LITTLE_ENDIAN);
+        bot.put(GameRecord.BOT).putShort((short) (int) id).putShort((short) length).put(bytes, 0, length);
+        out.write(bot.array());
+        botIds.put(name, id);
+        return id;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,283 @@
+package dk.easv.dal;
+
+import dk.easv.bll.game.stats.GameResult;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Appends game results to the binary log in a data directory, so that they outlive
+ * the application; see ResultLogFormat for the files and ResultLogReader for
+ * reading them back.
+ *
+ * Any thread can append. The results are handed to a single writer thread, which
+ * gives every new bot name an id in the dictionary and writes the fixed-width
+ * records through a buffer, emptying it whenever it runs out of results to write.
+ * Appending never waits, so a slow disk cannot hold up the simulation threads: a
+ * result that finds the writer far behind is dropped and counted, see getDropped().
+ * The log is closed, and every queued result written, when the JVM shuts down.
+ *
+ * The log file is locked while it is open, so a second application on the same
+ * data directory cannot mix its bot ids and records into it.
+ */
+public class ResultLog implements Closeable {
+
+    private static final String DEFAULT_DIRECTORY = "data";
+    private static final int QUEUE_CAPACITY = 1 << 16;
+    private static final int BUFFER_RECORDS = 4096;
+    private static final GameResult CLOSE = new GameResult("", "", GameResult.Winner.tie);
+
+    // The directories of the logs open in this process
+    private static final Set<Path> OPEN_DIRECTORIES = ConcurrentHashMap.newKeySet();
+
+    private final Path directory;
+    private final Path lockedDirectory;
+    private final FileChannel log;
+    private final FileChannel dictionary;
+    private final Map<String, Integer> botIds = new HashMap<>();
+    private final BlockingQueue<GameResult> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final ByteBuffer buffer =
+            ByteBuffer.allocateDirect(BUFFER_RECORDS * ResultLogFormat.RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private final Thread writer;
+    private final Thread shutdownHook;
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean closed;
+
+    private ResultLog(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        // Closing any channel to a locked file drops the JVM's lock on it, so a second
+        // log in this process is turned away before it opens the file at all
+        lockedDirectory = directory.toRealPath();
+        if (!OPEN_DIRECTORIES.add(lockedDirectory))
+            throw new IOException(directory + " is in use by another results log");
+        Path logFile = directory.resolve(ResultLogFormat.LOG_FILE);
+        FileChannel logChannel = null;
+        FileChannel dictionaryChannel = null;
+        try {
+            logChannel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            // Bot ids are handed out in memory, so two writers would give one id to different names
+            FileLock lock;
+            try {
+                lock = logChannel.tryLock();
+            }
+            catch (OverlappingFileLockException ex) {
+                lock = null;
+            }
+            if (lock == null)
+                throw new IOException(directory + " is in use by another results log");
+
+            List<String> names = new ArrayList<>();
+            long dictionaryBytes = ResultLogFormat.readDictionary(directory, names);
+            for (int id = 0; id < names.size(); id++)
+                botIds.put(names.get(id), id);
+
+            Path dictionaryFile = directory.resolve(ResultLogFormat.DICTIONARY_FILE);
+            dictionaryChannel = FileChannel.open(dictionaryFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            ResultLogFormat.checkHeader(dictionaryChannel, dictionaryFile, ResultLogFormat.DICTIONARY_MAGIC, 0);
+            ResultLogFormat.checkHeader(logChannel, logFile, ResultLogFormat.LOG_MAGIC, ResultLogFormat.RECORD_BYTES);
+            // Drop the tails of an entry and a record that a crash cut short, so both stay aligned
+            if (dictionaryBytes > 0)
+                dictionaryChannel.truncate(dictionaryBytes);
+            dictionaryChannel.position(dictionaryChannel.size());
+            long records = (logChannel.size() - ResultLogFormat.HEADER_BYTES) / ResultLogFormat.RECORD_BYTES;
+            logChannel.truncate(ResultLogFormat.HEADER_BYTES + records * ResultLogFormat.RECORD_BYTES);
+            logChannel.position(logChannel.size());
+        }
+        catch (IOException | RuntimeException ex) {
+            // Closing the log also releases its lock
+            if (logChannel != null)
+                logChannel.close();
+            if (dictionaryChannel != null)
+                dictionaryChannel.close();
+            OPEN_DIRECTORIES.remove(lockedDirectory);
+            throw ex;
+        }
+        log = logChannel;
+        dictionary = dictionaryChannel;
+
+        writer = new Thread(this::write, "uttt-result-log");
+        writer.setDaemon(true);
+        writer.start();
+        shutdownHook = new Thread(this::closeQuietly, "uttt-result-log-close");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Opens the log in the directory, creating it if needed. Only one log can be
+     * open on a directory at a time, in this process or any other.
+     * @throws IOException also if the directory's log is already open
+     */
+    public static ResultLog open(Path directory) throws IOException {
+        return new ResultLog(directory);
+    }
+
+    /**
+     * @return the uttt.data system property if it is set, otherwise ./data
+     */
+    public static Path defaultDirectory() {
+        return Paths.get(System.getProperty("uttt.data", DEFAULT_DIRECTORY));
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Queues the result for the writer thread, or drops it if the queue is full.
+     */
+    public void append(GameResult result) {
+        if (closed)
+            throw new IllegalStateException("The result log is closed");
+        if (!queue.offer(result) && dropped.incrementAndGet() == 1)
+            Logger.getLogger(ResultLog.class.getName()).warning("The result log cannot keep up, results are being dropped");
+    }
+
+    /**
+     * @return the results that were not saved because the writer was too far behind
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Writes every result appended so far and closes the files.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed)
+                return;
+            closed = true;
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        }
+        catch (IllegalStateException ex) {
+            // Already shutting down, which is how we got here
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(CLOSE);
+                writer.join();
+                break;
+            }
+            catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        try {
+            log.close();
+        }
+        finally {
+            OPEN_DIRECTORIES.remove(lockedDirectory);
+            dictionary.close();
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        }
+        catch (IOException ex) {
+            Logger.getLogger(ResultLog.class.getName()).log(Level.WARNING, "Closing the result log failed", ex);
+        }
+    }
+
+    private void write() {
+        List<GameResult> batch = new ArrayList<>(BUFFER_RECORDS);
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch, BUFFER_RECORDS - 1);
+                for (GameResult result : batch) {
+                    if (result == CLOSE) {
+                        writeBuffer();
+                        return;
+                    }
+                    if (!buffer.hasRemaining())
+                        writeBuffer();
+                    encode(result);
+                }
+                batch.clear();
+                if (queue.isEmpty())
+                    writeBuffer();
+            }
+        }
+        catch (IOException ex) {
+            Logger.getLogger(ResultLog.class.getName()).log(Level.SEVERE, "Writing the result log failed, results are no longer saved", ex);
+            // Keep taking results, so that appending never blocks for good
+            while (true) {
+                try {
+                    if (queue.take() == CLOSE)
+                        return;
+                }
+                catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void encode(GameResult result) throws IOException {
+        buffer.putLong(result.getDate().toEpochSecond(ZoneOffset.UTC));
+        buffer.putShort((short) botId(result.getPlayer0()));
+        buffer.putShort((short) botId(result.getPlayer1()));
+        buffer.put((byte) result.getWinner().ordinal());
+        buffer.put((byte) 0);
+        buffer.putShort((short) 0);
+    }
+
+    // Every new name goes to the dictionary before any record that uses it
+    private int botId(String name) throws IOException {
+        Integer id = botIds.get(name);
+        if (id != null)
+            return id;
+        if (botIds.size() == ResultLogFormat.MAX_BOTS)
+            throw new IOException("More than " + ResultLogFormat.MAX_BOTS + " bots in " + directory);
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, 0xFFFF);
+        ByteBuffer entry = ByteBuffer.allocate(2 + length).order(ByteOrder.LITTLE_ENDIAN);
+        entry.putShort((short) length).put(bytes, 0, length).flip();
+        while (entry.hasRemaining())
+            dictionary.write(entry);
+        id = botIds.size();
+        botIds.put(name, id);
+        return id;
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            log.write(buffer);
+        buffer.clear();
+    }
+}
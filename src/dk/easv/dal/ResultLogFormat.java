@@ -0,0 +1,108 @@
+package dk.easv.dal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The files of a results log directory, all little-endian with a 16 byte header
+ * of magic, version and two ints of their own:
+ *
+ *   results.log  the games, RECORD_BYTES each: epoch second (long, UTC), bot ids of
+ *                player 0 and player 1 (u16 each), winner (byte), flags (byte), unused (u16)
+ *   bots.dict    the bot names, one entry per id in id order: length (u16), UTF-8 bytes
+ *   results.idx  the per-pair counts of the first N games of the log, see ResultLogReader
+ *
+ * Records and dictionary entries are only ever appended. A record whose write was
+ * cut short by a crash is ignored, as is a bot id the dictionary does not have yet.
+ */
+final class ResultLogFormat {
+
+    static final String LOG_FILE = "results.log";
+    static final String DICTIONARY_FILE = "bots.dict";
+    static final String INDEX_FILE = "results.idx";
+
+    static final int LOG_MAGIC = 0x4C525455;          // "UTRL"
+    static final int DICTIONARY_MAGIC = 0x44425455;   // "UTBD"
+    static final int INDEX_MAGIC = 0x49525455;        // "UTRI"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final int RECORD_BYTES = 16;
+    static final int MAX_BOTS = (1 << 16) - 1;   // ids 0 to 65534, the pair key of two 65535s is taken
+
+    private ResultLogFormat() {
+    }
+
+    static ByteBuffer header(int magic, int a, int b) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(magic).putInt(VERSION).putInt(a).putInt(b).flip();
+        return header;
+    }
+
+    /**
+     * Writes the header to an empty file, or checks the header of an existing one.
+     */
+    static void checkHeader(FileChannel channel, Path file, int magic, int a) throws IOException {
+        if (channel.size() == 0) {
+            ByteBuffer header = header(magic, a, 0);
+            while (header.hasRemaining())
+                channel.write(header, header.position());
+            return;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+            // Keep reading until the header is complete or the file ends
+        }
+        header.flip();
+        if (header.remaining() < HEADER_BYTES || header.getInt() != magic)
+            throw new IOException(file + " is not a results log file");
+        int version = header.getInt();
+        if (version != VERSION)
+            throw new IOException(file + " has version " + version + ", expected " + VERSION);
+        if (header.getInt() != a)
+            throw new IOException(file + " has a different record size");
+    }
+
+    /**
+     * @return the bot names of the dictionary, in id order
+     */
+    static List<String> readDictionary(Path directory) throws IOException {
+        List<String> names = new ArrayList<>();
+        readDictionary(directory, names);
+        return names;
+    }
+
+    /**
+     * Adds the bot names of the dictionary to the list, in id order.
+     * @return the length of the complete entries, header included
+     */
+    static long readDictionary(Path directory, List<String> names) throws IOException {
+        Path file = directory.resolve(DICTIONARY_FILE);
+        if (!Files.exists(file) || Files.size(file) == 0)
+            return 0;
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != DICTIONARY_MAGIC)
+            throw new IOException(file + " is not a bot dictionary");
+        int version = buffer.getInt();
+        if (version != VERSION)
+            throw new IOException(file + " has version " + version + ", expected " + VERSION);
+        buffer.position(HEADER_BYTES);
+        long complete = HEADER_BYTES;
+        while (buffer.remaining() >= 2) {
+            int length = Short.toUnsignedInt(buffer.getShort());
+            if (buffer.remaining() < length)
+                break;   // cut short by a crash
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            names.add(new String(bytes, StandardCharsets.UTF_8));
+            complete = buffer.position();
+        }
+        return complete;
+    }
+}
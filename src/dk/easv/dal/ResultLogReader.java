@@ -0,0 +1,255 @@
+package dk.easv.dal;
+
+import dk.easv.bll.game.stats.GameResult;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads the standings, the number of games won, lost and tied per pair of bots,
+ * from a results log written by ResultLog.
+ *
+ * The counts of the first N games are kept in an index file next to the log. A
+ * read starts from the index, counts only the games appended since through a
+ * memory-mapped view of the log, and then writes the index again, so the
+ * standings over tens of millions of games load in about the time it takes to
+ * read the index.
+ */
+public final class ResultLogReader {
+
+    /**
+     * Takes the number of games between two bots, with player0 moving first, that
+     * ended with the given winner.
+     */
+    public interface PairVisitor {
+        void visit(String player0, String player1, GameResult.Winner winner, long games);
+    }
+
+    private static final GameResult.Winner[] WINNERS = GameResult.Winner.values();
+    private static final int INDEX_ENTRY_BYTES = 4 + 8 * WINNERS.length;
+    // Records in one mapping, which cannot be larger than 2 GB
+    private static final long RECORDS_PER_MAP = Integer.MAX_VALUE / ResultLogFormat.RECORD_BYTES;
+
+    private ResultLogReader() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path directory = args.length > 0 ? Paths.get(args[0]) : ResultLog.defaultDirectory();
+        long start = System.nanoTime();
+        long games = readStandings(directory, (player0, player1, winner, count) -> {
+            String result = winner == GameResult.Winner.tie ? "tie"
+                    : (winner == GameResult.Winner.player0 ? player0 : player1) + " wins";
+            System.out.printf("%s vs %s: %s %,d%n", player0, player1, result, count);
+        });
+        System.out.printf("%,d games in %s, read in %.1f ms%n", games, directory, (System.nanoTime() - start) / 1e6);
+    }
+
+    /**
+     * Visits the counts of every pair of bots and winner in the log, skipping
+     * zeros, and brings the index up to date.
+     * @return the number of games in the log
+     */
+    public static long readStandings(Path directory, PairVisitor visitor) throws IOException {
+        Path logFile = directory.resolve(ResultLogFormat.LOG_FILE);
+        if (!Files.exists(logFile))
+            return 0;
+        List<String> names = ResultLogFormat.readDictionary(directory);
+        Path indexFile = directory.resolve(ResultLogFormat.INDEX_FILE);
+        PairCounts counts = new PairCounts();
+        long indexed = readIndex(indexFile, counts);
+
+        long records;
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+            if (channel.size() > 0)
+                ResultLogFormat.checkHeader(channel, logFile, ResultLogFormat.LOG_MAGIC, ResultLogFormat.RECORD_BYTES);
+            records = Math.max(0, (channel.size() - ResultLogFormat.HEADER_BYTES) / ResultLogFormat.RECORD_BYTES);
+            if (indexed > records) {
+                // The log is not the one the index was made for
+                counts = new PairCounts();
+                indexed = 0;
+            }
+            for (long first = indexed; first < records; first += RECORDS_PER_MAP)
+                count(channel, first, Math.min(RECORDS_PER_MAP, records - first), counts);
+        }
+        if (records > indexed)
+            writeIndex(indexFile, records, counts);
+
+        for (int slot = 0; slot < counts.capacity(); slot++) {
+            int key = counts.keyAt(slot);
+            if (key == PairCounts.EMPTY)
+                continue;
+            int bot0 = key >>> 16;
+            int bot1 = key & 0xFFFF;
+            if (bot0 >= names.size() || bot1 >= names.size())
+                continue;   // a name that did not make it to the dictionary
+            for (int w = 0; w < WINNERS.length; w++) {
+                long games = counts.get(slot, w);
+                if (games > 0)
+                    visitor.visit(names.get(bot0), names.get(bot1), WINNERS[w], games);
+            }
+        }
+        return records;
+    }
+
+    private static void count(FileChannel channel, long first, long records, PairCounts counts) throws IOException {
+        MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY,
+                ResultLogFormat.HEADER_BYTES + first * ResultLogFormat.RECORD_BYTES,
+                records * ResultLogFormat.RECORD_BYTES);
+        map.order(ByteOrder.LITTLE_ENDIAN);
+        int lastKey = PairCounts.EMPTY;
+        int lastSlot = -1;
+        for (int offset = 0; offset < map.limit(); offset += ResultLogFormat.RECORD_BYTES) {
+            int key = Short.toUnsignedInt(map.getShort(offset + 8)) << 16 | Short.toUnsignedInt(map.getShort(offset + 10));
+            int winner = map.get(offset + 12);
+            if (winner < 0 || winner >= WINNERS.length)
+                continue;
+            // Simulations play long runs of the same pair
+            if (key != lastKey) {
+                lastSlot = counts.slot(key);
+                lastKey = key;
+            }
+            counts.add(lastSlot, winner, 1);
+        }
+    }
+
+    // Index: header with the number of pairs, the number of records counted, then the pairs
+    private static long readIndex(Path indexFile, PairCounts counts) {
+        try {
+            if (!Files.exists(indexFile))
+                return 0;
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(indexFile)).order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.remaining() < ResultLogFormat.HEADER_BYTES + 8
+                    || buffer.getInt() != ResultLogFormat.INDEX_MAGIC
+                    || buffer.getInt() != ResultLogFormat.VERSION)
+                return 0;
+            int pairs = buffer.getInt();
+            buffer.getInt();
+            long records = buffer.getLong();
+            if (buffer.remaining() != (long) pairs * INDEX_ENTRY_BYTES)
+                return 0;
+            for (int i = 0; i < pairs; i++) {
+                int slot = counts.slot(buffer.getInt());
+                for (int w = 0; w < WINNERS.length; w++)
+                    counts.add(slot, w, buffer.getLong());
+            }
+            return records;
+        }
+        catch (IOException ex) {
+            // The index only saves time, the log can always be read again
+            counts.clear();
+            return 0;
+        }
+    }
+
+    private static void writeIndex(Path indexFile, long records, PairCounts counts) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(ResultLogFormat.HEADER_BYTES + 8 + counts.size() * INDEX_ENTRY_BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(ResultLogFormat.header(ResultLogFormat.INDEX_MAGIC, counts.size(), 0));
+        buffer.putLong(records);
+        for (int slot = 0; slot < counts.capacity(); slot++) {
+            int key = counts.keyAt(slot);
+            if (key == PairCounts.EMPTY)
+                continue;
+            buffer.putInt(key);
+            for (int w = 0; w < WINNERS.length; w++)
+                buffer.putLong(counts.get(slot, w));
+        }
+        // Written next to the index and moved over it, so a reader never sees half of it
+        Path temporary = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        Files.write(temporary, buffer.array());
+        try {
+            Files.move(temporary, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temporary, indexFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Counts per winner for pair keys (bot0 << 16 | bot1), open addressing
+    private static final class PairCounts {
+        static final int EMPTY = -1;
+
+        private int[] keys = new int[64];
+        private long[] counts = new long[keys.length * WINNERS.length];
+        private int size;
+
+        PairCounts() {
+            Arrays.fill(keys, EMPTY);
+        }
+
+        int size() {
+            return size;
+        }
+
+        int capacity() {
+            return keys.length;
+        }
+
+        int keyAt(int slot) {
+            return keys[slot];
+        }
+
+        long get(int slot, int winner) {
+            return counts[slot * WINNERS.length + winner];
+        }
+
+        void add(int slot, int winner, long games) {
+            counts[slot * WINNERS.length + winner] += games;
+        }
+
+        void clear() {
+            Arrays.fill(keys, EMPTY);
+            Arrays.fill(counts, 0);
+            size = 0;
+        }
+
+        // The slot of the key, which is added if it is new
+        int slot(int key) {
+            int mask = keys.length - 1;
+            for (int slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+                if (keys[slot] == key)
+                    return slot;
+                if (keys[slot] == EMPTY) {
+                    if (2 * (size + 1) > keys.length) {
+                        grow();
+                        return slot(key);
+                    }
+                    keys[slot] = key;
+                    size++;
+                    return slot;
+                }
+            }
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            long[] oldCounts = counts;
+            keys = new int[oldKeys.length * 2];
+            counts = new long[keys.length * WINNERS.length];
+            Arrays.fill(keys, EMPTY);
+            size = 0;
+            for (int old = 0; old < oldKeys.length; old++) {
+                if (oldKeys[old] == EMPTY)
+                    continue;
+                int slot = slot(oldKeys[old]);
+                System.arraycopy(oldCounts, old * WINNERS.length, counts, slot * WINNERS.length, WINNERS.length);
+            }
+        }
+
+        private static int mix(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -2,8 +2,20 @@ package dk.easv.gui;
 
 import com.jfoenix.controls.*;
 import dk.easv.bll.bot.IBot;
-import dk.easv.bll.game.GameManager;
+import dk.easv.bll.bot.IBudgetedBot;
+import dk.easv.bll.bot.IRemoteBot;
+import dk.easv.bll.game.GameOutcome;
+import dk.easv.bll.game.GameRunner;
+import dk.easv.bll.game.GameSeeds;
+import dk.easv.bll.game.MoveWatchdog;
+import dk.easv.bll.game.SimulationScheduler;
+import dk.easv.bll.game.SimulationThroughput;
+import dk.easv.bll.game.TimeControl;
 import dk.easv.bll.game.stats.GameResult;
+import dk.easv.bll.game.stats.ResultAggregator;
+import dk.easv.bll.game.stats.ResultSnapshot;
+import dk.easv.bll.search.SearchBudget;
+import dk.easv.bll.search.SearchMonitor;
 import dk.easv.dal.DynamicBotClassHandler;
 import static dk.easv.gui.util.FontAwesomeHelper.getFontAwesomeIconFromPlayerId;
 import static dk.easv.dal.DynamicBotClassHandler.loadBotList;
@@ -64,13 +76,12 @@ public class AppController implements Initializable {
     @FXML
     private AnchorPane anchorMain;
     private BooleanProperty simulation= new SimpleBooleanProperty(false);
-    private volatile int winsBot1 = 0;
-    private volatile int winsBot2 = 0;
-    private volatile int ties = 0;
     @FXML
     private JFXToggleButton toggleBtnSim;
     @FXML
     private JFXSlider sliderSim;
+    @FXML
+    private JFXComboBox<SearchBudget> comboBudget;
     
     private Stage statsWindow  = null;
 
@@ -105,6 +116,13 @@ public class AppController implements Initializable {
         comboBotsRight.getSelectionModel().selectFirst();
         comboBotsRight.setDisable(true);
         simulation.bind(toggleBtnSim.selectedProperty());
+        // A node budget keeps simulated games at the same strength however loaded the machine is
+        comboBudget.setItems(FXCollections.observableArrayList(
+                SearchBudget.time(),
+                SearchBudget.nodes(10_000),
+                SearchBudget.nodes(50_000),
+                SearchBudget.nodes(200_000)));
+        comboBudget.getSelectionModel().selectFirst();
         /*simulation.addListener((obs,old,isSelected)->{
             if(isSelected){
                 
@@ -146,18 +164,15 @@ public class AppController implements Initializable {
     }
 
     private void startSimulation(long amountOfSimulations) {
-        int multiCores = Runtime.getRuntime().availableProcessors();
-        winsBot1 = 0;
-        winsBot2 = 0;
-        ties = 0;
-        for (int i = 0; i < multiCores; i++) {
-            Thread t = new Thread(
-                    new Simulator(amountOfSimulations/multiCores, 
-                        this.comboBotsLeft.getValue().getClass(), 
-                        this.comboBotsRight.getValue().getClass()));
-            t.setDaemon(true);
-            t.start();
-        }
+        // The scheduler blocks until every game is played, so it gets a thread of its own
+        Thread t = new Thread(
+                new Simulator(amountOfSimulations,
+                    this.comboBotsLeft.getValue().getClass(),
+                    this.comboBotsRight.getValue().getClass(),
+                    this.comboBudget.getValue(),
+                    GameSeeds.masterSeed()));
+        t.setDaemon(true);
+        t.start();
     }
 
     @FXML
@@ -167,127 +182,105 @@ public class AppController implements Initializable {
             toggleBtnSim.setSelected(false);
             toggleBtnSim.setDisable(false);
             sliderSim.setDisable(false);
+            comboBudget.setDisable(false);
         } else {
             toggleBtnSim.setSelected(false);
             toggleBtnSim.setDisable(true);
             sliderSim.setDisable(true);
+            comboBudget.setDisable(true);
         }
     }
     
-    private class Simulator implements Runnable{
+    private class Simulator implements Runnable, SimulationScheduler.GameListener {
         private final long amountOfSimulations;
-        private IBot bot1;
-        private IBot bot2;
+        private final long masterSeed;
+        private final Class<? extends IBot> b1;
+        private final Class<? extends IBot> b2;
+        private final SearchBudget budget;
+        private final String bot1Name;
+        private final String bot2Name;
+        private final ResultAggregator.Pair results;
         public Simulator(
                 long amountOfSimulations, 
                 Class<? extends IBot> b1, 
-                Class<? extends IBot> b2) {
+                Class<? extends IBot> b2,
+                SearchBudget budget,
+                long masterSeed) {
 
             this.amountOfSimulations=amountOfSimulations;
+            this.masterSeed=masterSeed;
+            this.b1 = b1;
+            this.b2 = b2;
+            this.budget = budget;
+            this.bot1Name = newBot(b1).getBotName();
+            this.bot2Name = newBot(b2).getBotName();
+            this.results = new ResultAggregator().pair(bot1Name, bot2Name);
+        }
+
+        // Every simulation thread plays with bots of its own
+        private IBot newBot(Class<? extends IBot> botClass) {
             try {
-                this.bot1 = b1.newInstance();
-                this.bot2 = b2.newInstance();
+                IBot bot = botClass.getConstructor().newInstance();
+                if (budget != null && bot instanceof IBudgetedBot)
+                    ((IBudgetedBot) bot).setSearchBudget(budget);
+                return bot;
             }
-            catch (InstantiationException ex) {
-                Logger.getLogger(AppController.class.getName()).log(Level.SEVERE, null, ex);
-            }
-            catch (IllegalAccessException ex) {
-                Logger.getLogger(AppController.class.getName()).log(Level.SEVERE, null, ex);
+            catch (ReflectiveOperationException ex) {
+                throw new IllegalStateException("Cannot create " + botClass.getName(), ex);
             }
         }
-        
+
         @Override
         public void run() {
-            for (int i = 0; i < amountOfSimulations/2; i++) {
-                BoardModel model = new BoardModel(bot1, bot2);
-                int currentPlayer = 0;
-                while (model.getGameOverState() == GameManager.GameOverState.Active
-                         && model.getGameState().getField().getAvailableMoves().size()>0) {
-                    currentPlayer = model.getCurrentPlayer();
-                    Boolean valid = model.doMove();
-                    if (!valid) {
-                        throw new RuntimeException("Bot not following rules!");
-                    }
-                }
-                // There is a tie
-                if (model.getGameOverState().equals(GameManager.GameOverState.Tie)) {
-                    this.addGameResult(
-                            new GameResult(
-                                    bot1.getBotName(), 
-                                    bot2.getBotName(), 
-                                    GameResult.Winner.tie));
-                    ties++;
-                }
-                else { // There is a winner
-                    GameResult.Winner winResult=null;
-                    if(currentPlayer==0) {
-                        winsBot1++;
-                        winResult = GameResult.Winner.player0;
-                    }
-                    else if(currentPlayer==1){
-                        winsBot2++;
-                        winResult = GameResult.Winner.player1;
-                    }
-                        
-                    this.addGameResult(
-                            new GameResult(
-                                    bot1.getBotName(), 
-                                    bot2.getBotName(), 
-                                    winResult));
-                }
-                
+            // Games against a remote bot mostly wait on the network, so play many at once
+            SimulationScheduler scheduler = IRemoteBot.class.isAssignableFrom(b1) || IRemoteBot.class.isAssignableFrom(b2)
+                    ? new SimulationScheduler(Runtime.getRuntime().availableProcessors(), SimulationScheduler.Mode.VIRTUAL)
+                    : new SimulationScheduler();
+            // A slow or hung bot loses its game instead of holding up a simulation thread
+            try (MoveWatchdog watchdog = MoveWatchdog.fromSystemProperties()) {
+                SimulationThroughput throughput = scheduler.run(
+                        () -> newBot(b1),
+                        () -> newBot(b2),
+                        new GameRunner(TimeControl.perMove(BoardModel.TIME_PER_MOVE), watchdog),
+                        amountOfSimulations,
+                        masterSeed,
+                        this);
+                // Every game has been played, so the snapshot is exact
+                ResultSnapshot result = results.snapshot();
+                setSimulationResults(bot1Name + " vs " +
+                            bot2Name + " | " +
+                            "w/w/t " + result.getWinsA() + "/" +
+                            result.getWinsB() + "/" + result.getTies() +
+                            " | forfeits " + result.getForfeitsA() + "/" + result.getForfeitsB() + " | seed " + masterSeed +
+                            String.format(" | %.1f games/s", throughput.getGamesPerSecond()));
+                Logger.getLogger(AppController.class.getName()).info(throughput.toString());
+                Logger.getLogger(AppController.class.getName()).info(watchdog.toString());
             }
-            for (int i = 0; i < amountOfSimulations/2; i++) {
-                BoardModel model = new BoardModel(bot2, bot1);
-                int currentPlayer = 0;
-                while (model.getGameOverState() == GameManager.GameOverState.Active
-                         && model.getGameState().getField().getAvailableMoves().size()>0) {
-                    currentPlayer = model.getCurrentPlayer();
-                    Boolean valid = model.doMove();
-                    if (!valid) {
-                        throw new RuntimeException("Bot not following rules!");
-                    }
-                }
-                // There is a tie
-                if (model.getGameOverState().equals(GameManager.GameOverState.Tie)) {
-                    this.addGameResult(
-                            new GameResult(
-                                    bot2.getBotName(), 
-                                    bot1.getBotName(), 
-                                    GameResult.Winner.tie));
-                    ties++;
-                }
-                else { // There is a winner
-                    GameResult.Winner winResult=null;
-                    if(currentPlayer==0) {
-                        winsBot2++;
-                        winResult = GameResult.Winner.player0;
-                    }
-                    else if(currentPlayer==1){
-                        winsBot1++;
-                        winResult = GameResult.Winner.player1;
-                    }
-                        
-                    this.addGameResult(
-                            new GameResult(
-                                    bot2.getBotName(), 
-                                    bot1.getBotName(), 
-                                    winResult));
-                }
-                
+            // Totals over every game played so far, also available through JMX
+            for (String name : new String[]{bot1Name, bot2Name}) {
+                String summary = SearchMonitor.get().summary(name);
+                if (!summary.isEmpty())
+                    Logger.getLogger(AppController.class.getName()).info(summary);
             }
-            setSimulationResults(bot1.getBotName() + " vs " +
-                        bot2.getBotName() + " | " +
-                        "w/w/t " + winsBot1 + "/" +
-                        winsBot2 + "/" + ties);
+        }
+
+        @Override
+        public void gameFinished(long game, boolean aFirst, GameOutcome outcome) {
+            // A forfeit, by an illegal move or by time, is a lost game and counted as such
+            results.record(aFirst, outcome);
+            this.addGameResult(
+                    new GameResult(
+                            aFirst ? bot1Name : bot2Name,
+                            aFirst ? bot2Name : bot1Name,
+                            outcome.getWinner()));
         }
         private void setSimulationResults(String result) {
             Platform.runLater(()-> 
                 statsModel.setLastSimulationResults(result));
         }
+        // Batched onto the FX thread by the model, one frame at a time
         private void addGameResult(GameResult gameResult) {
-            Platform.runLater(()->
-                statsModel.addGameResult(gameResult));
+            statsModel.offerGameResult(gameResult);
         }
     }
     private class CustomIBotListCell extends ListCell<IBot> {
@@ -307,8 +300,9 @@ public class AppController implements Initializable {
     @FXML
     public void clickStart(ActionEvent actionEvent) throws IOException {
         if (simulation.get()) {
-            startSimulation(Math.round(sliderSim.getValue()));
+            // Cleared first, the workers start queueing results right away
             statsModel.clear();
+            startSimulation(Math.round(sliderSim.getValue()));
             openStatsWindow();
         }
         else {
@@ -5,6 +5,7 @@ import dk.easv.bll.bot.IBot;
 import dk.easv.bll.game.*;
 import dk.easv.bll.game.IGameState;
 import dk.easv.bll.move.IMove;
+import dk.easv.bll.search.SearchReport;
 import javafx.beans.InvalidationListener;
 import javafx.beans.Observable;
 
@@ -12,7 +13,9 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class BoardModel implements Observable{
-    private static final int TIME_PER_MOVE = 1000; //Each bot is allowed 1000ms per move
+    static final int TIME_PER_MOVE = 1000; //Each bot is allowed 1000ms per move
+    // Shared by every game in the UI, its threads end by themselves when idle
+    private static final MoveWatchdog WATCHDOG = MoveWatchdog.fromSystemProperties();
     private final List<InvalidationListener> listeners = new ArrayList<>();
     private final GameManager game;
     private boolean isForced=false;
@@ -24,10 +27,12 @@ public class BoardModel implements Observable{
     public BoardModel(IBot bot, boolean humanPlaysFirst) {
         game = new GameManager(new GameState(), bot, humanPlaysFirst);
         game.getCurrentState().setTimePerMove(TIME_PER_MOVE);
+        game.setMoveWatchdog(WATCHDOG);
     }
     public BoardModel(IBot bot1, IBot bot2) {
         game = new GameManager(new GameState(), bot1, bot2);
         game.getCurrentState().setTimePerMove(TIME_PER_MOVE);
+        game.setMoveWatchdog(WATCHDOG);
     }
 
     private void notifyAllListeners(){
@@ -50,7 +55,7 @@ public class BoardModel implements Observable{
         return game.getCurrentState();
     }
 
-    // If bot is cheating/malfunctioning opponent wins
+    // If bot is cheating/malfunctioning/too slow opponent wins
    public void forceGameOver(int winner){
         isForced=true;
         game.setCurrentPlayer(winner);
@@ -88,8 +93,17 @@ public class BoardModel implements Observable{
         return game.getGameOver();
     }
 
+    public SearchReport getLastReport(int player) {
+        return game.getLastReport(player);
+    }
+
     public boolean getIsForced() {
         return isForced;
     }
 
+    // True if the last bot move was forfeited for taking longer than TIME_PER_MOVE and the grace margin
+    public boolean getIsTimedOut() {
+        return game.isTimedOut();
+    }
+
 }
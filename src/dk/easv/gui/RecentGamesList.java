@@ -0,0 +1,69 @@
+package dk.easv.gui;
+
+import dk.easv.bll.game.stats.GameResult;
+import dk.easv.bll.game.stats.ResultStore;
+import javafx.collections.ObservableListBase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The recent games of a ResultStore as a read-only list, oldest first. A game is
+ * only turned into a GameResult when a visible cell asks for it, so the list view
+ * costs no more memory than the store, however many games are played.
+ */
+class RecentGamesList extends ObservableListBase<GameResult> {
+
+    private final ResultStore store;
+
+    RecentGamesList(ResultStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public GameResult get(int index) {
+        return store.get(index);
+    }
+
+    @Override
+    public int size() {
+        return store.size();
+    }
+
+    /**
+     * Adds the games to the store and tells the listeners which games were added
+     * at the end and which were dropped from the start to make room.
+     */
+    void append(List<GameResult> results) {
+        if (results.isEmpty())
+            return;
+        int oldSize = store.size();
+        int added = Math.min(results.size(), store.getCapacity());
+        int dropped = Math.max(0, oldSize + added - store.getCapacity());
+        List<GameResult> removed = new ArrayList<>(dropped);
+        for (int i = 0; i < dropped; i++)
+            removed.add(store.get(i));
+
+        for (GameResult result : results)
+            store.add(result);
+
+        beginChange();
+        if (dropped > 0)
+            nextRemove(0, removed);
+        nextAdd(store.size() - added, store.size());
+        endChange();
+    }
+
+    /**
+     * Clears the store, games and counts alike.
+     */
+    void reset() {
+        List<GameResult> removed = new ArrayList<>(this);
+        store.clear();
+        if (removed.isEmpty())
+            return;
+        beginChange();
+        nextRemove(0, removed);
+        endChange();
+    }
+}
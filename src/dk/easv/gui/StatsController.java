@@ -8,16 +8,22 @@ package dk.easv.gui;
 import com.jfoenix.controls.JFXListView;
 import dk.easv.bll.game.stats.GameResult;
 import dk.easv.bll.game.stats.GameResult.Winner;
+import dk.easv.bll.game.stats.ResultSnapshot;
 import dk.easv.gui.util.FontAwesomeHelper;
 import java.net.URL;
 import java.time.format.DateTimeFormatter;
 import java.util.ResourceBundle;
+import javafx.beans.binding.Bindings;
+import javafx.beans.property.ReadOnlyStringWrapper;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.Node;
 import javafx.scene.control.ContentDisplay;
 import javafx.scene.control.ListCell;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.stage.Stage;
 
 /**
@@ -29,6 +35,26 @@ public class StatsController implements Initializable {
 
     @FXML
     private JFXListView<GameResult> listResults;
+    @FXML
+    private TableView<ResultSnapshot> tablePairs;
+    @FXML
+    private TableColumn<ResultSnapshot, String> colBotA;
+    @FXML
+    private TableColumn<ResultSnapshot, String> colBotB;
+    @FXML
+    private TableColumn<ResultSnapshot, Long> colGames;
+    @FXML
+    private TableColumn<ResultSnapshot, Long> colWinsA;
+    @FXML
+    private TableColumn<ResultSnapshot, Long> colWinsAFirst;
+    @FXML
+    private TableColumn<ResultSnapshot, Long> colWinsB;
+    @FXML
+    private TableColumn<ResultSnapshot, Long> colWinsBFirst;
+    @FXML
+    private TableColumn<ResultSnapshot, Long> colTies;
+    @FXML
+    private TableColumn<ResultSnapshot, String> colScoreA;
 
     private StatsModel statsModel;
     
@@ -37,12 +63,25 @@ public class StatsController implements Initializable {
     @Override
     public void initialize(URL url, ResourceBundle rb) {
         listResults.setCellFactory(p->new CustomGameResultListCell());
+        colBotA.setCellValueFactory(new PropertyValueFactory<>("botA"));
+        colBotB.setCellValueFactory(new PropertyValueFactory<>("botB"));
+        colGames.setCellValueFactory(new PropertyValueFactory<>("games"));
+        colWinsA.setCellValueFactory(new PropertyValueFactory<>("winsA"));
+        colWinsAFirst.setCellValueFactory(new PropertyValueFactory<>("winsAFirst"));
+        colWinsB.setCellValueFactory(new PropertyValueFactory<>("winsB"));
+        colWinsBFirst.setCellValueFactory(new PropertyValueFactory<>("winsBFirst"));
+        colTies.setCellValueFactory(new PropertyValueFactory<>("ties"));
+        colScoreA.setCellValueFactory(cell -> new ReadOnlyStringWrapper(
+                String.format("%.1f%%", cell.getValue().getScoreA() * 100)));
     }    
 
     public void setStatsModel(StatsModel statsModel, Stage stage) {
         this.statsModel = statsModel;
         listResults.setItems(statsModel.getGameResults());
-        stage.titleProperty().bind(statsModel.lastSimulationResultsProperty());
+        tablePairs.setItems(statsModel.getPairResults());
+        stage.titleProperty().bind(Bindings.concat(
+                statsModel.lastSimulationResultsProperty(),
+                statsModel.unlistedResultsProperty()));
     }
 
     @FXML
@@ -6,23 +6,85 @@
 package dk.easv.gui;
 
 import dk.easv.bll.game.stats.GameResult;
+import dk.easv.bll.game.stats.ResultQueue;
+import dk.easv.bll.game.stats.ResultSnapshot;
+import dk.easv.bll.game.stats.ResultStore;
+import dk.easv.dal.ResultLog;
+import dk.easv.dal.ResultLogReader;
+import javafx.animation.AnimationTimer;
 import javafx.beans.Observable;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
 /**
  *
  * @author jeppjleemoritzled
  */
 public class StatsModel {
-    private final ObservableList<GameResult> gameResults = 
+    // Simulation results wait here for the next frame, see offerGameResult
+    private static final int QUEUE_CAPACITY = 20_000;
+    private static final int MAX_RESULTS_PER_FRAME = 2_000;
+    // Games listed in the stats window; older ones are only counted
+    private static final int RECENT_GAMES = 10_000;
+
+    private final ResultStore store = new ResultStore(RECENT_GAMES);
+
+    private final RecentGamesList gameResults = new RecentGamesList(store);
+
+    private final ObservableList<ResultSnapshot> pairResults =
             FXCollections.observableArrayList();
     
     private final StringProperty lastSimulationResults = 
             new SimpleStringProperty("");
 
+    private final StringProperty unlistedResults =
+            new SimpleStringProperty("");
+
+    private final ResultQueue pendingResults = new ResultQueue(QUEUE_CAPACITY);
+    private final List<GameResult> batch = new ArrayList<>();
+
+    // Every result is saved here as well, null if the log could not be opened
+    private final ResultLog resultLog;
+
+    private final AnimationTimer delivery = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            deliverResults();
+        }
+    };
+
+    public StatsModel() {
+        resultLog = openResultLog();
+        updateAggregates();
+        delivery.start();
+    }
+
+    // Counts the games of earlier runs and opens the log for the games of this one
+    private ResultLog openResultLog() {
+        Path directory = ResultLog.defaultDirectory();
+        try {
+            long start = System.nanoTime();
+            long games = ResultLogReader.readStandings(directory, store::addCounts);
+            Logger.getLogger(StatsModel.class.getName()).info(String.format(
+                    "Loaded %,d earlier games from %s in %.1f ms", games, directory, (System.nanoTime() - start) / 1e6));
+            return ResultLog.open(directory);
+        }
+        catch (IOException ex) {
+            Logger.getLogger(StatsModel.class.getName()).log(Level.WARNING, "Results will not be saved", ex);
+            return null;
+        }
+    }
+
     public StringProperty lastSimulationResultsProperty() {
         return lastSimulationResults;
     }
@@ -35,17 +97,73 @@ public class StatsModel {
         this.lastSimulationResults.set(lastSimulationResults);
     }
     
+    /**
+     * @return the most recent games, oldest first, at most RECENT_GAMES of them
+     */
     public ObservableList<GameResult> getGameResults(){
         return gameResults;
     }
+
+    /**
+     * @return the results of every game since the last clear, per pair of bots;
+     *         at startup that includes the games saved by earlier runs
+     */
+    public ObservableList<ResultSnapshot> getPairResults() {
+        return pairResults;
+    }
     
-    public synchronized void addGameResult(GameResult gr) {
-        gameResults.add(gr);
+    /**
+     * Adds a result on the FX thread, e.g. of a game played in the UI.
+     */
+    public void addGameResult(GameResult gr) {
+        if (resultLog != null)
+            resultLog.append(gr);
+        gameResults.append(Collections.singletonList(gr));
+        updateAggregates();
+    }
+
+    /**
+     * Hands over a result from a simulation thread without waiting for the UI.
+     * Results are added to the list in bulk once per frame; those that do not fit
+     * in the queue while the UI is behind are only counted, see unlistedResultsProperty.
+     */
+    public void offerGameResult(GameResult gr) {
+        if (resultLog != null)
+            resultLog.append(gr);
+        pendingResults.offer(gr);
+    }
+
+    /**
+     * @return a note on the games that were counted but never listed, empty if
+     *         there are none
+     */
+    public StringProperty unlistedResultsProperty() {
+        return unlistedResults;
+    }
+
+    // Called on the FX thread once per frame
+    private void deliverResults() {
+        boolean changed = false;
+        if (pendingResults.drainTo(batch, MAX_RESULTS_PER_FRAME) > 0) {
+            gameResults.append(batch);
+            batch.clear();
+            changed = true;
+        }
+        if (pendingResults.drainOverflow(store::addUnlisted) > 0)
+            changed = true;
+        if (changed)
+            updateAggregates();
+    }
+
+    private void updateAggregates() {
+        pairResults.setAll(store.pairSnapshots());
+        long unlisted = store.getUnlisted();
+        unlistedResults.set(unlisted == 0 ? "" : String.format(" | %,d games not listed", unlisted));
     }
 
     public void clear() {
-        gameResults.clear();
+        pendingResults.clear();
+        gameResults.reset();
+        updateAggregates();
     }
-    
-    
 }
@@ -33,6 +33,9 @@ public class UTTTGameController implements Initializable {
     @FXML
     private StackPane stackMain;
 
+    @FXML
+    private Label lblSearchReport;
+
     private final GridPane[][] gridMicros = new GridPane[3][3];
     private final JFXButton[][] jfxButtons = new JFXButton[9][9];
 
@@ -46,6 +49,7 @@ public class UTTTGameController implements Initializable {
     @Override
     public void initialize(URL location, ResourceBundle resources) {
         gridMacro.toFront(); // Or the buttons will not work
+        lblSearchReport.toFront(); // Mouse transparent, so the buttons still work
         createMicroGridPanes();
     }
 
@@ -146,7 +150,7 @@ public class UTTTGameController implements Initializable {
             int winnerId = Integer.parseInt(winner);
             winMsg = getNameFromId(winnerId) + " wins";
             if(model.getIsForced())
-                winMsg += " (opponent false move)";
+                winMsg += model.getIsTimedOut() ? " (opponent out of time)" : " (opponent false move)";
             winStatus = winnerId == 0
                     ? GameResult.Winner.player0
                     : GameResult.Winner.player1;
@@ -257,7 +261,13 @@ public class UTTTGameController implements Initializable {
                                     if (model.getGameOverState() == GameManager.GameOverState.Active && isHumanVsBot) {
                                         int currentPlayer = model.getCurrentPlayer();
                                         Boolean valid = model.doMove();
-                                        checkAndLockIfGameEnd(currentPlayer);
+                                        if (!valid && model.getIsTimedOut()) {
+                                            // The bot is out of time, so the human wins rather than waiting for it
+                                            model.forceGameOver(1 - currentPlayer);
+                                            showWinnerPane("" + (1 - currentPlayer));
+                                        }
+                                        else
+                                            checkAndLockIfGameEnd(currentPlayer);
                                     }
                                 }
                         );
@@ -291,6 +301,11 @@ public class UTTTGameController implements Initializable {
     }
 
     private void updateGUI() throws RuntimeException {
+        // The report of the bot that just moved, if it has one
+        int mover = 1 - model.getCurrentPlayer();
+        IBot moverBot = mover == 0 ? bot0 : bot1;
+        if (moverBot instanceof IReportingBot)
+            lblSearchReport.setText(moverBot.getBotName() + ": " + model.getLastReport(mover));
         String[][] board = model.getBoard();
         for (int i = 0; i < board.length; i++) {
             for (int k = 0; k < board[i].length; k++) {